@@ -0,0 +1,229 @@
+// Emir Adar
+
+/**
+ * This class holds precomputed attack tables. Knights, kings and pawns use one bitboard per square,
+ * rooks and bishops use magic bitboards: the blockers on the rays of a square are multiplied by a magic
+ * number and the top bits of the product index a table with the attacks for exactly those blockers.
+ * */
+public final class Attacks {
+
+    private static final long[] KNIGHT = new long[64];
+    private static final long[] KING = new long[64];
+    private static final long[][] PAWN = new long[2][64];
+
+    private static final long[] ROOK_MASK = new long[64];
+    private static final long[] ROOK_MAGIC = new long[64];
+    private static final int[] ROOK_SHIFT = new int[64];
+    private static final long[][] ROOK_TABLE = new long[64][];
+
+    private static final long[] BISHOP_MASK = new long[64];
+    private static final long[] BISHOP_MAGIC = new long[64];
+    private static final int[] BISHOP_SHIFT = new int[64];
+    private static final long[][] BISHOP_TABLE = new long[64][];
+
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    private static final int[][] KNIGHT_STEPS = {{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};
+    private static final int[][] KING_STEPS = {{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}};
+    private static final int[][] ROOK_STEPS = {{1, 0}, {0, 1}, {-1, 0}, {0, -1}};
+    private static final int[][] BISHOP_STEPS = {{1, 1}, {-1, 1}, {-1, -1}, {1, -1}};
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            KNIGHT[square] = stepAttacks(square, KNIGHT_STEPS);
+            KING[square] = stepAttacks(square, KING_STEPS);
+            PAWN[Position.WHITE][square] = stepAttacks(square, new int[][] {{1, -1}, {1, 1}});
+            PAWN[Position.BLACK][square] = stepAttacks(square, new int[][] {{-1, -1}, {-1, 1}});
+        }
+
+        // the magic numbers are searched with a fixed seed, so the tables are the same on every start
+        long[] seed = {0x2545F4914F6CDD1DL};
+        for (int square = 0; square < 64; square++) {
+            initMagic(square, ROOK_STEPS, ROOK_MASK, ROOK_MAGIC, ROOK_SHIFT, ROOK_TABLE, seed);
+            initMagic(square, BISHOP_STEPS, BISHOP_MASK, BISHOP_MAGIC, BISHOP_SHIFT, BISHOP_TABLE, seed);
+        }
+
+        for (int a = 0; a < 64; a++) {
+            for (int b = 0; b < 64; b++) {
+                if (a == b)
+                    continue;
+                long bits = 1L << a | 1L << b;
+                if ((rook(a, 0) & 1L << b) != 0) {
+                    BETWEEN[a][b] = rook(a, 1L << b) & rook(b, 1L << a);
+                    LINE[a][b] = rook(a, 0) & rook(b, 0) | bits;
+                } else if ((bishop(a, 0) & 1L << b) != 0) {
+                    BETWEEN[a][b] = bishop(a, 1L << b) & bishop(b, 1L << a);
+                    LINE[a][b] = bishop(a, 0) & bishop(b, 0) | bits;
+                }
+            }
+        }
+    }
+
+    private Attacks() {}
+
+    /**
+     * This method gets the squares a knight attacks
+     * @param square the square of the knight
+     * */
+    public static long knight(int square) {
+        return KNIGHT[square];
+    }
+
+    /**
+     * This method gets the squares a king attacks
+     * @param square the square of the king
+     * */
+    public static long king(int square) {
+        return KING[square];
+    }
+
+    /**
+     * This method gets the squares a pawn attacks, which are the squares diagonally in front of it
+     * @param white true for a white pawn
+     * @param square the square of the pawn
+     * */
+    public static long pawn(boolean white, int square) {
+        return PAWN[white ? Position.WHITE : Position.BLACK][square];
+    }
+
+    /**
+     * This method gets the squares a rook attacks, the first blocker on each ray is included
+     * @param square the square of the rook
+     * @param occupied the bitboard of all the pieces on the board
+     * */
+    public static long rook(int square, long occupied) {
+        return ROOK_TABLE[square][(int) ((occupied & ROOK_MASK[square]) * ROOK_MAGIC[square] >>> ROOK_SHIFT[square])];
+    }
+
+    /**
+     * This method gets the squares a bishop attacks, the first blocker on each ray is included
+     * @param square the square of the bishop
+     * @param occupied the bitboard of all the pieces on the board
+     * */
+    public static long bishop(int square, long occupied) {
+        return BISHOP_TABLE[square][(int) ((occupied & BISHOP_MASK[square]) * BISHOP_MAGIC[square] >>> BISHOP_SHIFT[square])];
+    }
+
+    /**
+     * This method gets the squares a queen attacks, the first blocker on each ray is included
+     * @param square the square of the queen
+     * @param occupied the bitboard of all the pieces on the board
+     * */
+    public static long queen(int square, long occupied) {
+        return rook(square, occupied) | bishop(square, occupied);
+    }
+
+    /**
+     * This method gets the squares strictly between two squares on the same row, column or diagonal
+     * @return the squares between, or 0 if the squares are not on a common line
+     * */
+    public static long between(int a, int b) {
+        return BETWEEN[a][b];
+    }
+
+    /**
+     * This method gets the whole line from edge to edge through two squares on the same row, column or diagonal
+     * @return the squares on the line, or 0 if the squares are not on a common line
+     * */
+    public static long line(int a, int b) {
+        return LINE[a][b];
+    }
+
+    private static long stepAttacks(int square, int[][] steps) {
+        long attacks = 0;
+        for (int[] step : steps) {
+            int rank = Position.rank(square) + step[0];
+            int file = Position.file(square) + step[1];
+            if (rank >= 0 && rank < 8 && file >= 0 && file < 8)
+                attacks |= 1L << (rank * 8 + file);
+        }
+        return attacks;
+    }
+
+    // walking the rays until the first blocker, this is only used to fill the tables
+    private static long slidingAttacks(int square, long occupied, int[][] steps) {
+        long attacks = 0;
+        for (int[] step : steps) {
+            int rank = Position.rank(square) + step[0];
+            int file = Position.file(square) + step[1];
+            while (rank >= 0 && rank < 8 && file >= 0 && file < 8) {
+                long bit = 1L << (rank * 8 + file);
+                attacks |= bit;
+                if ((occupied & bit) != 0)
+                    break;
+                rank += step[0];
+                file += step[1];
+            }
+        }
+        return attacks;
+    }
+
+    // the squares whose occupancy matters, the last square of every ray never blocks anything
+    private static long relevantMask(int square, int[][] steps) {
+        long mask = 0;
+        for (int[] step : steps) {
+            int rank = Position.rank(square) + step[0];
+            int file = Position.file(square) + step[1];
+            while (rank + step[0] >= 0 && rank + step[0] < 8 && file + step[1] >= 0 && file + step[1] < 8) {
+                mask |= 1L << (rank * 8 + file);
+                rank += step[0];
+                file += step[1];
+            }
+        }
+        return mask;
+    }
+
+    private static void initMagic(int square, int[][] steps, long[] masks, long[] magics, int[] shifts, long[][] tables, long[] seed) {
+        long mask = relevantMask(square, steps);
+        int bits = Long.bitCount(mask);
+        int size = 1 << bits;
+
+        // listing every subset of the mask together with the attacks it produces
+        long[] occupancies = new long[size];
+        long[] attacks = new long[size];
+        long subset = 0;
+        for (int i = 0; i < size; i++) {
+            occupancies[i] = subset;
+            attacks[i] = slidingAttacks(square, subset, steps);
+            subset = (subset - mask) & mask;
+        }
+
+        long[] table = new long[size];
+        int[] epoch = new int[size];
+        for (int attempt = 1; ; attempt++) {
+            long magic = random(seed) & random(seed) & random(seed);
+            if (Long.bitCount((mask * magic) & 0xFF00000000000000L) < 6)
+                continue;
+
+            // a magic is good if subsets with different attacks never share an index
+            boolean good = true;
+            for (int i = 0; i < size && good; i++) {
+                int index = (int) (occupancies[i] * magic >>> (64 - bits));
+                if (epoch[index] != attempt) {
+                    epoch[index] = attempt;
+                    table[index] = attacks[i];
+                } else if (table[index] != attacks[i]) {
+                    good = false;
+                }
+            }
+            if (good) {
+                masks[square] = mask;
+                magics[square] = magic;
+                shifts[square] = 64 - bits;
+                tables[square] = table;
+                return;
+            }
+        }
+    }
+
+    // xorshift random numbers
+    private static long random(long[] seed) {
+        long x = seed[0];
+        x ^= x >>> 12;
+        x ^= x << 25;
+        x ^= x >>> 27;
+        seed[0] = x;
+        return x * 2685821657736338717L;
+    }
+}
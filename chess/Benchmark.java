@@ -0,0 +1,134 @@
+// Emir Adar
+import java.util.function.IntSupplier;
+
+/**
+ * This class measures how fast the rules run on a fixed set of positions.
+ * Every benchmark is warmed up first and then measured in several rounds, the median round is reported.
+ * Usage: java Benchmark [name...], the names are generate, legal, check, checkmate and perft.
+ * */
+public class Benchmark {
+
+    // the positions every benchmark runs on, the last two are checkmates
+    private static final String[] CORPUS = {
+            Fen.STARTING_POSITION,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "rnb1kbnr/pppp1ppp/8/4p3/6Pq/5P2/PPPPP2P/RNBQKBNR w KQkq - 1 3",
+            "R5k1/5ppp/8/8/8/8/8/6K1 b - - 1 1"
+    };
+
+    private static final long WARMUP_NANOS = 1_000_000_000L;
+    private static final long ROUND_NANOS = 500_000_000L;
+    private static final int ROUNDS = 5;
+
+    private final Position[] positions = new Position[CORPUS.length];
+    private final int[] moves = new int[256];
+
+    // the results are summed up so that the JIT cannot remove the measured code
+    private long sink;
+
+    public Benchmark() {
+        for (int i = 0; i < CORPUS.length; i++)
+            positions[i] = Fen.parse(CORPUS[i]);
+    }
+
+    /**
+     * This method generates the moves of every position, without checking for check
+     * */
+    public int generate() {
+        int total = 0;
+        for (Position position : positions)
+            total += position.generateMoves(moves);
+        return total;
+    }
+
+    /**
+     * This method generates the legal moves of every position
+     * */
+    public int legal() {
+        int total = 0;
+        for (Position position : positions)
+            total += position.generateLegalMoves(moves);
+        return total;
+    }
+
+    /**
+     * This method checks if the side to move is in check in every position
+     * */
+    public int check() {
+        int total = 0;
+        for (Position position : positions) {
+            if (position.isInCheck(position.isWhiteToMove()))
+                total++;
+        }
+        return total;
+    }
+
+    /**
+     * This method checks if the side to move is checkmated in every position
+     * */
+    public int checkmate() {
+        int total = 0;
+        for (Position position : positions) {
+            if (position.isCheckmate(position.isWhiteToMove()))
+                total++;
+        }
+        return total;
+    }
+
+    /**
+     * This method counts the nodes three plies deep from every position
+     * */
+    public int perft() {
+        long total = 0;
+        for (Position position : positions)
+            total += new Perft(position).count(3);
+        return (int) total;
+    }
+
+    /**
+     * This method runs one benchmark and prints the time per position
+     * @param name the name of the benchmark
+     * @param operation the operation, it runs once over the whole corpus
+     * */
+    private void run(String name, IntSupplier operation) {
+        long end = System.nanoTime() + WARMUP_NANOS;
+        while (System.nanoTime() < end)
+            sink += operation.getAsInt();
+
+        double[] results = new double[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            long calls = 0;
+            long start = System.nanoTime();
+            long now = start;
+            while (now - start < ROUND_NANOS) {
+                sink += operation.getAsInt();
+                calls++;
+                now = System.nanoTime();
+            }
+            results[round] = (double) (now - start) / (calls * positions.length);
+        }
+        java.util.Arrays.sort(results);
+        System.out.printf("%-10s %12.1f ns/position%n", name, results[ROUNDS / 2]);
+    }
+
+    public static void main(String[] args) {
+        Benchmark benchmark = new Benchmark();
+        java.util.List<String> names = java.util.Arrays.asList(args.length > 0 ? args
+                : new String[] {"generate", "legal", "check", "checkmate", "perft"});
+
+        if (names.contains("generate"))
+            benchmark.run("generate", benchmark::generate);
+        if (names.contains("legal"))
+            benchmark.run("legal", benchmark::legal);
+        if (names.contains("check"))
+            benchmark.run("check", benchmark::check);
+        if (names.contains("checkmate"))
+            benchmark.run("checkmate", benchmark::checkmate);
+        if (names.contains("perft"))
+            benchmark.run("perft", benchmark::perft);
+        System.out.println("(" + benchmark.sink + ")");
+    }
+}
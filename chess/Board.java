@@ -9,16 +9,27 @@ public class Board extends JFrame{
 
     // declaring variables
     private Square[][] squares;
+    private BoardView view;
+    private final MoveHints moveHints = new MoveHints();
     private Square draggedSquare;
     private MoveListener moveListener;
     private boolean isWhitesTurn;
     private boolean isWhitePlayer;
     private boolean isTheEndOfTheGame;
-    private King whiteKing;
-    private King blackKing;
+    private Position position = Position.startingPosition();
 
     public Board(){initializeGUI();}
 
+    /**
+     * This is the constructor for a board that starts from any position
+     * @param fen the position in Forsyth-Edwards Notation
+     * @throws IllegalArgumentException if the FEN is not valid
+     * */
+    public Board(String fen){
+        this.position = Fen.parse(fen);
+        initializeGUI();
+    }
+
     public void startGame(){
         initBoard(isWhitePlayer);
         pack();
@@ -38,81 +49,73 @@ public class Board extends JFrame{
      * This method initializes the board with empty squares
      * */
     private void initBoard(boolean isWhitePlayer){
-        // initializing variables
+        // initializing variables, the view flips the board for the black player
         this.squares = new Square[8][8];
-        String[] columnNames = {"A", "B", "C", "D", "E", "F", "G", "H"};
-        String[] rowNames = {"8", "7", "6", "5", "4", "3", "2", "1"};
-
-        // adding the column names to the board
-        JPanel columnNamesPanel = new JPanel(new GridLayout(1, 9));
-        columnNamesPanel.add(new JLabel(""));
-        for (String columnName : columnNames) {
-            columnNamesPanel.add(new JLabel(columnName, SwingConstants.CENTER));
-        }
-
-        // adding the panel where the squares are going to be
-        JPanel squaresPanel = new JPanel(new GridLayout(8, 9));
-        for(int i = 0; i <= 7; i++){
-            // adding the row names before the squares
-            squaresPanel.add(new JLabel(rowNames[i], SwingConstants.CENTER));
-            // adding the squares to the panel
-            for(int j = 0; j <= 7; j++){
-                int row = isWhitePlayer ? i : 7 - i;
-                int col = isWhitePlayer ? j : 7 - j;
-                if ((row + col) % 2 == 0){
-                    this.squares[row][col] = new Square(row, col, null, true, this);
-                    squaresPanel.add(this.squares[row][col]);
-                } else {
-                    this.squares[row][col] = new Square(row, col, null, false, this);
-                    squaresPanel.add(this.squares[row][col]);
-                }
+        for (int row = 0; row <= 7; row++) {
+            for (int col = 0; col <= 7; col++) {
+                this.squares[row][col] = new Square(row, col, null, (row + col) % 2 == 0, this);
             }
         }
-        add(columnNamesPanel, BorderLayout.NORTH);
-        add(squaresPanel, BorderLayout.CENTER);
+        this.view = new BoardView(this);
+        add(view, BorderLayout.CENTER);
         setPieces();
+        moveHints.request(position, null);
     }
 
     /**
      * This method sets the pieces on the board
      * */
     private void setPieces(){
+        render();
+    }
 
-        // putting ROOKS on the board
-        this.squares[0][0].setPiece(new Rook(false, this.squares[0][0]));
-        this.squares[0][7].setPiece(new Rook(false, this.squares[0][7]));
-        this.squares[7][0].setPiece(new Rook(true, this.squares[7][0]));
-        this.squares[7][7].setPiece(new Rook(true, this.squares[7][7]));
-
-        // putting KNIGHTS on the board
-        this.squares[0][1].setPiece(new Knight(false, this.squares[0][1]));
-        this.squares[0][6].setPiece(new Knight(false, this.squares[0][6]));
-        this.squares[7][1].setPiece(new Knight(true, this.squares[7][1]));
-        this.squares[7][6].setPiece(new Knight(true, this.squares[7][6]));
-
-        // putting up BISHOPS on the board
-        this.squares[0][2].setPiece(new Bishop(false, this.squares[0][2]));
-        this.squares[0][5].setPiece(new Bishop(false, this.squares[0][5]));
-        this.squares[7][2].setPiece(new Bishop(true, this.squares[7][2]));
-        this.squares[7][5].setPiece(new Bishop(true, this.squares[7][5]));
-
-        // putting up QUEENS on the board
-        this.squares[0][3].setPiece(new Queen(false, this.squares[0][3]));
-        this.squares[7][3].setPiece(new Queen(true, this.squares[7][3]));
-
-        blackKing = new King(false, this.squares[0][4]);
-        whiteKing = new King(true, this.squares[7][4]);
-        // putting up KINGS on the board
-        this.squares[0][4].setPiece(blackKing);
-        this.squares[7][4].setPiece(whiteKing);
-
-        // putting PAWNS on the board
-        for(int i = 0; i <= 7; i++){
-            this.squares[1][i].setPiece(new Pawn(false, this.squares[1][i]));
-            this.squares[6][i].setPiece(new Pawn(true, this.squares[6][i]));
+    /**
+     * This method updates the squares so that they show the pieces of the position,
+     * only the squares whose piece has changed are updated
+     * */
+    private void render(){
+        for (Square[] row : squares) {
+            for (Square square : row) {
+                int code = position.pieceAt(square.getIndex());
+                Piece piece = square.getPiece();
+                if (piece == null ? code != Position.EMPTY : piece.getCode() != code) {
+                    square.setPiece(code == Position.EMPTY ? null : Piece.create(code, square));
+                }
+            }
         }
     }
 
+    /**
+     * This method performs a move on the position and updates the squares
+     * @param start the square of the piece that moves
+     * @param end the square the piece moves to, for castling this is the square the king moves to
+     * @param promotedPieceType if there is a promotion, this holds the type of the piece
+     * */
+    public void applyMove(Square start, Square end, String promotedPieceType) {
+        position.makeMove(start.getIndex(), end.getIndex(), Position.typeFromName(promotedPieceType));
+        render();
+        // the legal moves of the new position are ready before a piece is picked up, the old ones are cancelled
+        moveHints.request(position, null);
+    }
+
+    /**
+     * This method replaces the position, for example after the game was resumed, the squares are updated once
+     * @param position the new position
+     * */
+    public void loadPosition(Position position) {
+        this.position = position;
+        render();
+        moveHints.request(position, null);
+    }
+
+    /**
+     * This method gets the headless position that the board shows
+     * @return the position
+     * */
+    public Position getPosition() {
+        return position;
+    }
+
     /**
      * This method gets the square with the given coordinates
      * @param row the column of the square
@@ -127,22 +130,36 @@ public class Board extends JFrame{
     }
 
     /**
-     * This method gets the square with the given point on the screen
-     * @param screenLocation the coordinates for where the mouse is interacting
+     * This method gets the square under a point of the board's view, the point is found by arithmetic
+     * and respects the orientation of the board
+     * @param point the coordinates relative to the view, for example MouseEvent.getPoint()
+     * @return the square, or null if the point is outside the squares
      * */
-    public Square getSquare(Point screenLocation) {
-        for (Square[] row : squares) {
-            for (Square square : row) {
-                Point locationOnScreen = square.getLocationOnScreen();
-                if (locationOnScreen != null) {
-                    Rectangle squareBoundsOnScreen = new Rectangle(locationOnScreen, square.getSize());
-                    if (squareBoundsOnScreen.contains(screenLocation)) {
-                        return square;
-                    }
-                }
-            }
-        }
-        return null;
+    public Square getSquare(Point point) {
+        return view.squareAt(point.x, point.y);
+    }
+
+    /**
+     * This method repaints a square whose piece has changed
+     * @param square the square
+     * */
+    public void repaintSquare(Square square) {
+        if (view != null)
+            view.repaintSquare(square);
+    }
+
+    /**
+     * This method gets the legal move destinations that are calculated in the background
+     * */
+    public MoveHints getMoveHints() {
+        return moveHints;
+    }
+
+    /**
+     * This method gets the component that paints the board
+     * */
+    public BoardView getView() {
+        return view;
     }
 
     /**
@@ -257,9 +274,7 @@ public class Board extends JFrame{
     }
 
     public King getThisKing() {
-        if(isWhitePlayer)
-            return whiteKing;
-        else
-            return blackKing;
+        int kingSquare = position.kingSquare(isWhitePlayer);
+        return (King) squares[Position.row(kingSquare)][Position.col(kingSquare)].getPiece();
     }
 }
@@ -0,0 +1,326 @@
+// Emir Adar
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.geom.AffineTransform;
+
+/**
+ * This class paints the whole board in one component: the coordinates, the squares and the pieces.
+ * When a piece changes only its square is repainted, and a dragged piece is drawn under the mouse by
+ * repainting the area it leaves and the area it enters.
+ * */
+public class BoardView extends JComponent {
+
+    // declaring variables
+    private static final long serialVersionUID = 1L;
+    private static final int MARGIN = 20;
+    private static final int DEFAULT_SQUARE_SIZE = 60;
+    private static final Color LIGHT = Color.WHITE;
+    private static final Color DARK = Color.GRAY;
+    private static final Color HOVER = new Color(70, 130, 180);
+    private static final Color HINT = new Color(70, 130, 180, 120);
+
+    private final Board board;
+    private final Icon[] sprites = new Icon[12];
+    private int spriteSize;
+    private double spriteScale;
+    private boolean dragging;
+    private int dragX;
+    private int dragY;
+    private Square hoveredSquare;
+    private long hints;
+
+    /**
+     * This is the constructor for this class
+     * @param board the board that is shown
+     * */
+    public BoardView(Board board) {
+        this.board = board;
+        setOpaque(true);
+        setPreferredSize(new Dimension(MARGIN + 8 * DEFAULT_SQUARE_SIZE, MARGIN + 8 * DEFAULT_SQUARE_SIZE));
+        BoardMouseListener listener = new BoardMouseListener();
+        addMouseListener(listener);
+        addMouseMotionListener(listener);
+    }
+
+    /**
+     * This method gets the width and height of one square, the board grows with the component
+     * */
+    public int getSquareSize() {
+        return Math.max(1, Math.min(getWidth() - MARGIN, getHeight() - MARGIN) / 8);
+    }
+
+    /**
+     * This method gets the x coordinate of a column in this component, black sees the board flipped
+     * @param col the column of the square
+     * */
+    public int columnX(int col) {
+        return MARGIN + (board.isWhitePlayer() ? col : 7 - col) * getSquareSize();
+    }
+
+    /**
+     * This method gets the y coordinate of a row in this component, black sees the board flipped
+     * @param row the row of the square
+     * */
+    public int rowY(int row) {
+        return MARGIN + (board.isWhitePlayer() ? row : 7 - row) * getSquareSize();
+    }
+
+    /**
+     * This method gets the square under a point of this component
+     * @param x the x coordinate in this component
+     * @param y the y coordinate in this component
+     * @return the square, or null if the point is outside the squares
+     * */
+    public Square squareAt(int x, int y) {
+        int size = getSquareSize();
+        int displayCol = Math.floorDiv(x - MARGIN, size);
+        int displayRow = Math.floorDiv(y - MARGIN, size);
+        if (displayCol < 0 || displayCol > 7 || displayRow < 0 || displayRow > 7)
+            return null;
+        int row = board.isWhitePlayer() ? displayRow : 7 - displayRow;
+        int col = board.isWhitePlayer() ? displayCol : 7 - displayCol;
+        return board.getSquare(row, col);
+    }
+
+    /**
+     * This method gets the square under the mouse
+     * @return the square, or null if the mouse is outside the squares
+     * */
+    public Square getHoveredSquare() {
+        return hoveredSquare;
+    }
+
+    /**
+     * This method repaints only the given square
+     * @param square the square whose piece has changed
+     * */
+    public void repaintSquare(Square square) {
+        int size = getSquareSize();
+        repaint(columnX(square.getCol()), rowY(square.getRow()), size, size);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        long start = System.nanoTime();
+        Rectangle clip = g.getClipBounds();
+        if (clip == null)
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        int size = getSquareSize();
+        updateSprites(g, size);
+
+        g.setColor(getBackground() != null ? getBackground() : Color.LIGHT_GRAY);
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        if (clip.x < MARGIN || clip.y < MARGIN)
+            paintCoordinates(g, size);
+
+        // painting only the squares that are inside the area that has to be repainted
+        Square dragged = board.getDraggedSquare();
+        for (int row = 0; row < 8; row++) {
+            int y = rowY(row);
+            if (y + size <= clip.y || y >= clip.y + clip.height)
+                continue;
+            for (int col = 0; col < 8; col++) {
+                int x = columnX(col);
+                if (x + size <= clip.x || x >= clip.x + clip.width)
+                    continue;
+                Square square = board.getSquare(row, col);
+                g.setColor(square.isLight() ? LIGHT : DARK);
+                g.fillRect(x, y, size, size);
+                Piece piece = square.getPiece();
+                if (piece != null && (square != dragged || !dragging))
+                    sprites[piece.getCode()].paintIcon(this, g, x, y);
+                // the squares the dragged piece can move to are marked with a dot
+                if ((hints & 1L << square.getIndex()) != 0) {
+                    g.setColor(HINT);
+                    g.fillOval(x + size / 3, y + size / 3, size / 3, size / 3);
+                }
+                // the square the dragged piece would be dropped on is highlighted
+                if (square == hoveredSquare && dragged != null && square != dragged) {
+                    g.setColor(HOVER);
+                    g.drawRect(x, y, size - 1, size - 1);
+                    g.drawRect(x + 1, y + 1, size - 3, size - 3);
+                }
+            }
+        }
+
+        // the dragged piece is drawn last so that it is above the squares
+        if (dragged != null && dragging && dragged.getPiece() != null)
+            sprites[dragged.getPiece().getCode()].paintIcon(this, g, dragX - size / 2, dragY - size / 2);
+        MoveMetrics.record(MoveMetrics.Stage.PAINT, start);
+    }
+
+    // the icons are looked up again only when the square size or the screen scale changes
+    private void updateSprites(Graphics g, int size) {
+        AffineTransform transform = ((Graphics2D) g).getTransform();
+        double scale = transform.getScaleX();
+        if (size != spriteSize || scale != spriteScale) {
+            for (int piece = 0; piece < 12; piece++)
+                sprites[piece] = SpriteCache.getIcon(piece, size, scale);
+            spriteSize = size;
+            spriteScale = scale;
+        }
+    }
+
+    private void paintCoordinates(Graphics g, int size) {
+        g.setColor(Color.BLACK);
+        FontMetrics metrics = g.getFontMetrics();
+        for (int i = 0; i < 8; i++) {
+            String file = String.valueOf((char) ('A' + i));
+            String rank = String.valueOf(8 - i);
+            g.drawString(file, columnX(i) + (size - metrics.stringWidth(file)) / 2, (MARGIN + metrics.getAscent()) / 2);
+            g.drawString(rank, (MARGIN - metrics.stringWidth(rank)) / 2, rowY(i) + (size + metrics.getAscent()) / 2);
+        }
+    }
+
+    // repainting the area the dragged piece leaves and the area it enters, Swing merges them into one paint per frame
+    private void drag(boolean dragging, int x, int y) {
+        int size = getSquareSize();
+        if (this.dragging)
+            repaint(dragX - size / 2, dragY - size / 2, size, size);
+        this.dragging = dragging;
+        dragX = x;
+        dragY = y;
+        if (dragging)
+            repaint(x - size / 2, y - size / 2, size, size);
+    }
+
+    // the hovered square only changes when the mouse crosses into another square, then two squares are repainted
+    private void hover(int x, int y) {
+        Square square = squareAt(x, y);
+        if (square != hoveredSquare) {
+            if (hoveredSquare != null)
+                repaintSquare(hoveredSquare);
+            hoveredSquare = square;
+            if (square != null)
+                repaintSquare(square);
+        }
+    }
+
+    // the legal moves are calculated in the background, the dots are shown as soon as they are known
+    private void requestHints(Square square) {
+        board.getMoveHints().request(board.getPosition(), () -> {
+            if (board.getDraggedSquare() == square)
+                showHints(board.getMoveHints().getTargets(board.getPosition(), square.getIndex()));
+        });
+    }
+
+    private void showHints(long targets) {
+        long changed = hints ^ targets;
+        hints = targets;
+        while (changed != 0) {
+            int index = Long.numberOfTrailingZeros(changed);
+            changed &= changed - 1;
+            repaintSquare(board.getSquare(Position.row(index), Position.col(index)));
+        }
+    }
+
+    /**
+     * This inner class listens to the mouse, it picks up a piece when the mouse is pressed,
+     * drags it while the mouse moves and tries to move it when the mouse is released
+     * */
+    private class BoardMouseListener extends MouseAdapter {
+
+        public void mousePressed(MouseEvent me) {
+            hover(me.getX(), me.getY());
+            Square square = hoveredSquare;
+            if (square == null)
+                return;
+            Piece piece = square.getPiece();
+            // if there is a piece on the square and it's the same color as the player and the player can play
+            // the square is being saved
+            if (piece != null && piece.isWhite() == board.isWhitePlayer() && board.isThisPlayersTurn()) {
+                board.setDraggedSquare(square);
+                drag(true, me.getX(), me.getY());
+                repaintSquare(square);
+                requestHints(square);
+            } else if(board.isTheEndOfTheGame()) {
+                System.out.println("End of the game reached. Your opponent won!");
+            } else {
+                System.out.println("Not your piece");
+            }
+        }
+
+        public void mouseDragged(MouseEvent me) {
+            hover(me.getX(), me.getY());
+            if (board.getDraggedSquare() != null)
+                drag(true, me.getX(), me.getY());
+        }
+
+        public void mouseMoved(MouseEvent me) {
+            hover(me.getX(), me.getY());
+        }
+
+        public void mouseExited(MouseEvent me) {
+            hover(-1, -1);
+        }
+
+        public void mouseReleased(MouseEvent me) {
+            Square startSquare = board.getDraggedSquare();
+            hover(me.getX(), me.getY());
+            Square releaseSquare = hoveredSquare;
+
+            // the piece is put back first, a move repaints the squares it changes
+            board.setDraggedSquare(null);
+            drag(false, 0, 0);
+            showHints(0);
+            if (startSquare == null)
+                return;
+            repaintSquare(startSquare);
+
+            if (releaseSquare != null && !startSquare.equals(releaseSquare)) {
+                Piece draggedPiece = startSquare.getPiece();
+                if (draggedPiece instanceof King)
+                    handleKingMove(startSquare, releaseSquare, (King) draggedPiece);
+                else
+                    handleOtherPieceMove(startSquare, releaseSquare, draggedPiece);
+            }
+        }
+
+        private void handleKingMove(Square startSquare, Square releaseSquare, King draggedPiece) {
+            // checking if it's checkmate
+            if (draggedPiece.isCheckmate(board)) {
+                board.setTheEndOfTheGame(true);
+                return;
+            }
+
+            // checking for castling move
+            if (draggedPiece.isCastlingMove(board, startSquare, releaseSquare)) {
+                Square kingEnd = draggedPiece.getCastlingSquare(board, startSquare, releaseSquare);
+                if (!draggedPiece.kingIsInCheckAfterMove(board, startSquare, kingEnd))
+                    draggedPiece.handleCastling(board, startSquare, releaseSquare);
+                return;
+            }
+
+            long start = System.nanoTime();
+            boolean legal = draggedPiece.canMove(board, startSquare, releaseSquare) && !draggedPiece.kingIsInCheckAfterMove(board, startSquare, releaseSquare);
+            MoveMetrics.record(MoveMetrics.Stage.CHECK, start);
+            if (legal)
+                performMove(startSquare, releaseSquare, null);
+        }
+
+        private void handleOtherPieceMove(Square startSquare, Square releaseSquare, Piece draggedPiece) {
+            // if the piece can move to the given square and the move doesn't put the king in check, allow the move
+            long start = System.nanoTime();
+            boolean legal = draggedPiece.canMove(board, startSquare, releaseSquare) && !draggedPiece.kingIsInCheckAfterMove(board, startSquare, releaseSquare);
+            MoveMetrics.record(MoveMetrics.Stage.CHECK, start);
+            if (legal) {
+                String promotedPieceType = null;
+                if (draggedPiece instanceof Pawn && (releaseSquare.getRow() == 7 || releaseSquare.getRow() == 0)) {
+                    Piece promotedPiece = ((Pawn) draggedPiece).promotePawn();
+                    if (promotedPiece == null)
+                        return;
+                    promotedPieceType = promotedPiece.getClass().getSimpleName();
+                }
+                performMove(startSquare, releaseSquare, promotedPieceType);
+            }
+        }
+
+        private void performMove(Square startSquare, Square releaseSquare, String promotedPieceType){
+            board.applyMove(startSquare, releaseSquare, promotedPieceType);
+            if (board.getMoveListener() != null)
+                board.getMoveListener().moveMade(startSquare, releaseSquare, null, null, promotedPieceType);
+        }
+    }
+}
@@ -1,195 +1,458 @@
 // Emir Adar
 import javax.swing.*;
-import java.io.*;
-import java.net.*;
-import java.util.regex.Pattern;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
 
-/**This class handles communication between two players of the chess game*/
-public class ChessClient implements Runnable, MoveListener{
+/**
+ * This class handles communication between two players of the chess game.
+ * The socket is non-blocking and driven by a NetworkLoop, messages are handled on the loop's thread as they arrive.
+ * The server sends every line to everyone in the game, including the player who sent it.
+ * <p>
+ * Handshake: a new client sends "HELLO id". A white player that is already waiting answers "WHITE" at once,
+ * and the new client becomes black and answers "BLACK", to which white answers "START". If no "WHITE" arrives
+ * shortly after the client's own "HELLO" came back from the server, nobody is waiting and the client becomes white.
+ * If the relay and both players understand it, moves are sent as binary frames of Protocol instead of text.
+ * The game itself is kept by a GameState whose writer is the network thread, the board is only changed on the
+ * Swing event thread.
+ * <p>
+ * The relay gives every player a resume token when it has told its color. If the connection drops during the game,
+ * the client connects again and sends "RESUME game token moves", the relay answers with the moves it missed
+ * (or a snapshot of the position) and "RESUMED moves", and the board is updated once.
+ * */
+public class ChessClient implements Connection.Handler, MoveListener, GameState.Listener {
+
+    /**
+     * This enum holds the states of the connection
+     * */
+    private enum State { CONNECTING, HANDSHAKE, WAITING_FOR_BLACK, WAITING_FOR_START, PLAYING, RECONNECTING, RESUMING, CLOSED }
 
     // declaring variables
-    private Thread thread = new Thread(this);
-    private Socket socket = null;
-    private volatile boolean running = true;
-    private Board board;
-    private BufferedReader in;
-    private PrintWriter out;
-    private static String host = "atlas.dsv.su.se";
-    private static int port = 9494;
-    public static boolean playersDetermined = false;
-    private final Pattern format = Pattern.compile("[a-z]\\d[a-z]\\d( Queen|Rook|Bishop|Knight)?");
-    private final Pattern castlingFormat = Pattern.compile("[a-z]\\d[a-z]\\d . [a-z]\\d[a-z]\\d");
+    // the server, can be set with -Dchess.host=<host> and -Dchess.port=<port>, for example to use a local RelayServer
+    private static String host = System.getProperty("chess.host", "atlas.dsv.su.se");
+    private static int port = Integer.getInteger("chess.port", 9494);
+    // how long white waits between announcing itself, for clients that do not send HELLO
+    private static final long ANNOUNCE_MILLIS = 500;
+    // the least time to wait for a waiting white player after the own HELLO came back
+    private static final long MIN_REPLY_MILLIS = 50;
+    // how long to wait for the own HELLO if the server does not send it back
+    private static final long NO_ECHO_MILLIS = 1000;
+    // the wait before connecting again after the connection dropped, it doubles up to the most
+    private static final long RECONNECT_MIN_MILLIS = 100;
+    private static final long RECONNECT_MAX_MILLIS = 2000;
+    // how long to try before giving up on the game
+    private static final long RECONNECT_GIVE_UP_MILLIS = 30_000;
+
+    private final Board board;
+    private final NetworkLoop loop = new NetworkLoop("Chess network");
+    private volatile Connection connection;
+    private final String hello = "HELLO " + Long.toHexString(System.nanoTime() ^ System.identityHashCode(this)) + " BINARY";
+    // the lines this client sent that the server has not sent back yet
+    private final Deque<String> echoes = new ArrayDeque<>();
+    private volatile State state = State.CONNECTING;
+    private boolean serverEchoes;
+    private boolean serverBinary;
+    private volatile boolean binary;
+    private int gameId;
+    // the moves and the position, its writer is the network thread
+    private final GameState game;
+    private boolean whitePlayer;
+    // set on the Swing event thread when the board has seen the end of the game
+    private volatile boolean ended;
+    private long helloSent;
+    // when the own last move was sent and its line, the time until it comes back from the server is measured
+    private volatile long moveSent;
+    private volatile String sentMove;
+    // the relay's resume token and the game it belongs to, 0 until the relay has sent it
+    private long token;
+    private int tokenGame;
+    // the position that is brought up to date while resuming, the board gets it at the end
+    private Position resumed;
+    private int resumedMoves;
+    // the moves the catch up brought, null after a snapshot
+    private int[] missed;
+    private long reconnectDelay;
+    private long reconnectDeadline;
 
     /**
-     * This is the constructor for this class
+     * This is the constructor for this class, it does not wait for the server
      * @param board It takes a board as a parameter
      * */
     public ChessClient(Board board) {
         // setting the board for this instance
         this.board = board;
         this.board.setMoveListener(this);
-        // trying to connect to the socket, opening in and out communication and determining which player THIS player is
-        try {
-            socket = new Socket(host, port);
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            out = new PrintWriter(socket.getOutputStream(), true);
-            determineColor();
-        } catch (IOException | InterruptedException e) {
-            // if an exception occurs, THIS instance is disconnected with the kill method
-            JOptionPane.showMessageDialog(null, "Could not connect to the server", "Error", JOptionPane.ERROR_MESSAGE);
-            kill();
+        this.game = new GameState(board, loop::execute, this);
+        this.connection = loop.connect(host, port, this);
+        // -Dchess.metrics=true prints the times of the move stages every ten seconds
+        if (Boolean.getBoolean("chess.metrics"))
+            printMetrics();
+    }
+
+    private void printMetrics() {
+        if (state != State.CLOSED) {
+            System.out.print(MoveMetrics.snapshot());
+            loop.schedule(10_000, this::printMetrics);
         }
-        thread.start();
     }
 
     /**
-     * This method is used for listening to the incoming messages
+     * This method is called when the connection is open, it starts the handshake
+     * @param connection the connection
      * */
     @Override
-    public void run() {
-
-        // determining which player THIS is
-        while(!playersDetermined) {
-            try {
-                determinePlayers();
-            } catch (IOException | InterruptedException e) {
-                JOptionPane.showMessageDialog(null, "Could not determine players.", "Error", JOptionPane.ERROR_MESSAGE);
-            }
+    public void opened(Connection connection) {
+        if (state == State.RECONNECTING) {
+            resume(connection);
+            return;
         }
+        state = State.HANDSHAKE;
+        helloSent = System.nanoTime();
+        connection.send(hello);
+        // a server that does not send the own lines back never sends the HELLO, so the wait is limited
+        loop.schedule(NO_ECHO_MILLIS, () -> {
+            if (state == State.HANDSHAKE && !serverEchoes)
+                becomeWhite();
+        });
+    }
 
-        // when both players have been determined, they listen to incoming moves
-        while(running){
+    /**
+     * This method is used for handling the incoming messages
+     * @param connection the connection
+     * @param response the line that arrived
+     * */
+    @Override
+    public void received(Connection connection, String response) {
+        // the own lines coming back from the server are skipped
+        if (isEcho(response))
+            return;
+        if (response.startsWith("TOKEN ")) {
+            int space = response.indexOf(' ', 6);
+            tokenGame = Integer.parseInt(response.substring(6, space));
+            token = Long.parseUnsignedLong(response.substring(space + 1), 16);
+            return;
+        }
+        if (state == State.RESUMING) {
+            resumed(response);
+            return;
+        }
+        if (response.startsWith("ERROR ")) {
+            rejected(response);
+            return;
+        }
 
-            try {
-                String response = in.readLine();
-                if(response.equals("END"))
-                    JOptionPane.showMessageDialog(null, "This is the end of the game, your opponent has won!", "Error", JOptionPane.ERROR_MESSAGE);
-                // however only the player who isn't playing is listening to the moves until the player is switched
-                if(!board.isThisPlayersTurn()){
-                    listenForMoves();
+        switch (state) {
+            case HANDSHAKE:
+                determineColor(response);
+                break;
+            case WAITING_FOR_BLACK:
+                if (response.startsWith("HELLO ")) {
+                    send(serverBinary && response.endsWith(" BINARY") ? "WHITE BINARY" : "WHITE");
+                } else if (response.startsWith("BLACK")) {
+                    binary = serverBinary && response.equals("BLACK BINARY");
+                    send("START");
+                    state = State.PLAYING;
                 }
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+                break;
+            case WAITING_FOR_START:
+                if (response.equals("START"))
+                    state = State.PLAYING;
+                break;
+            case PLAYING:
+                if(response.equals("END")) {
+                    game.finish();
+                    showMessage("This is the end of the game, your opponent has won!");
+                }
+                // however only the player who isn't playing is listening to the moves until the player is switched
+                else if(!isThisPlayersTurn())
+                    listenForMoves(response);
+                break;
+            default:
+                break;
         }
     }
 
     /**
-     * This method is for determining the color of THIS player
-     * @throws IOException if there's a problem with the reading and writing
-     * @throws InterruptedException if there's a problem where the method is interrupted
+     * This method is used for handling an incoming binary frame
+     * @param connection the connection
+     * @param frame the frame
      * */
-    private void determineColor() throws IOException, InterruptedException {
-
-        // to make sure that there's no timing issues when receiving the message
-        socket.setSoTimeout(1000);
-        try{
-            // if the incoming message is "WHITE" it means that the white player has connected to the server
-            String initialMessage = in.readLine();
-            if (initialMessage.startsWith("WHITE")) {
-                board.setWhitePlayer(false);
-                out.println("BLACK");
-                board.startGame();//board.flipBoard();
-            }
-        } catch (SocketTimeoutException e){
-            // if there's no incoming message it means that this is the first player connecting, hence it's the white player
-            board.setWhitePlayer(true);
-            board.startGame();
-            out.println("WHITE");
-        } finally{
-            // when both are connected it's the white's turn and the timeout isn't needed
-            board.setWhitesTurn(true);
-            socket.setSoTimeout(0);
+    @Override
+    public void received(Connection connection, ByteBuffer frame) {
+        if (state == State.RESUMING) {
+            catchUp(frame);
+            return;
+        }
+        if (Protocol.type(frame) == Protocol.ERROR) {
+            takeBack(Protocol.sequence(frame));
+            showMessage("The server rejected move " + Protocol.sequence(frame) + ": " + Protocol.reasonName(Protocol.reason(frame)));
+            return;
+        }
+        if (state != State.PLAYING || !binary || Protocol.type(frame) != Protocol.MOVE || Protocol.game(frame) != gameId)
+            return;
+        // the own moves come back with a number that was already used, they are skipped
+        int moves = game.getMoves();
+        if (Protocol.sequence(frame) == moves && moveSent != 0) {
+            wire();
+        } else if (Protocol.sequence(frame) == moves + 1 && !isThisPlayersTurn()) {
+            long start = System.nanoTime();
+            int move = Protocol.move(frame);
+            MoveMetrics.record(MoveMetrics.Stage.PARSE, start);
+            game.remoteMove(move);
         }
     }
 
     /**
-     * This method is used for determining the player
-     * @throws IOException if there's a problem with the reading and writing
-     * @throws InterruptedException if there's a problem where the method is interrupted
+     * This method is called when the connection is closed
+     * @param connection the connection
+     * @param cause the error, or null
      * */
-    private synchronized void determinePlayers() throws IOException, InterruptedException {
-        String response;
-        // once the black player has connected it sends a message that ends the loop
-        while ((response = in.readLine()) != null && !response.equals("START")) {
-            if (response.equals("BLACK")) {
-                playersDetermined = true;
-                out.println("START");
-            } else if(!playersDetermined && response.equals("WHITE")){
-                out.println(response);
-                wait(500);
+    @Override
+    public void closed(Connection connection, IOException cause) {
+        // a connection that was already replaced does not matter any more
+        if (this.connection != null && connection != this.connection)
+            return;
+        State previous = state;
+        if (token != 0 && (previous == State.PLAYING || previous == State.RECONNECTING || previous == State.RESUMING))
+            reconnect();
+        else if (previous == State.CONNECTING)
+            kill("Could not connect to the server");
+        else if (previous != State.CLOSED)
+            kill("The connection to the server was lost");
+    }
+
+    // connecting again a little later, the wait grows each time the server cannot be reached
+    private void reconnect() {
+        long now = System.currentTimeMillis();
+        if (state == State.PLAYING) {
+            reconnectDelay = RECONNECT_MIN_MILLIS;
+            reconnectDeadline = now + RECONNECT_GIVE_UP_MILLIS;
+        } else {
+            reconnectDelay = Math.min(reconnectDelay * 2, RECONNECT_MAX_MILLIS);
+        }
+        if (now + reconnectDelay > reconnectDeadline) {
+            kill("The connection to the server was lost");
+            return;
+        }
+        state = State.RECONNECTING;
+        loop.schedule(reconnectDelay, () -> {
+            if (state == State.RECONNECTING)
+                connection = loop.connect(host, port, this);
+        });
+    }
+
+    // asking the relay for the moves made since the last one this client knows of
+    private synchronized void resume(Connection connection) {
+        state = State.RESUMING;
+        // the relay does not send back what was sent before the drop
+        echoes.clear();
+        resumed = new Position(game.getPosition());
+        resumedMoves = game.getMoves();
+        missed = new int[0];
+        connection.send("RESUME " + tokenGame + " " + Long.toHexString(token) + " " + resumedMoves);
+    }
+
+    // the missed moves are made on a copy of the position, the board is not touched for each of them
+    private void catchUp(ByteBuffer frame) {
+        int type = Protocol.type(frame);
+        if (type == Protocol.SNAPSHOT && frame.remaining() == Protocol.SNAPSHOT_SIZE) {
+            resumed = Protocol.snapshot(frame);
+            resumedMoves = Protocol.sequence(frame);
+            missed = null;
+        } else if (type == Protocol.MOVE && Protocol.sequence(frame) == resumedMoves + 1) {
+            resumed.makeMove(Protocol.move(frame));
+            resumedMoves++;
+            if (missed != null) {
+                missed = java.util.Arrays.copyOf(missed, missed.length + 1);
+                missed[missed.length - 1] = Protocol.move(frame);
             }
         }
     }
 
+    // the catch up is over, the board shows the position the relay has
+    private void resumed(String response) {
+        if (response.startsWith("RESUMED ")) {
+            game.load(resumed, Integer.parseInt(response.substring(8)), missed);
+            state = State.PLAYING;
+        } else if (response.startsWith("ERROR")) {
+            kill("The game could not be resumed");
+        }
+    }
+
+    // checking if the line is one this client sent, the first one tells if the server sends them back at all
+    private synchronized boolean isEcho(String response) {
+        if (state == State.HANDSHAKE && response.equals(hello)) {
+            serverEchoes = true;
+            echoes.clear();
+            // a waiting white player answers the HELLO right away, a few round trips are enough to hear it
+            long roundTrip = (System.nanoTime() - helloSent) / 1_000_000L;
+            loop.schedule(Math.max(MIN_REPLY_MILLIS, 4 * roundTrip), () -> {
+                if (state == State.HANDSHAKE)
+                    becomeWhite();
+            });
+            return true;
+        }
+        if (!echoes.isEmpty() && echoes.peekFirst().equals(response)) {
+            echoes.pollFirst();
+            if (response.equals(sentMove))
+                wire();
+            return true;
+        }
+        return false;
+    }
+
+    // the own move came back, the time includes both ways and the relay
+    private void wire() {
+        long sent = moveSent;
+        moveSent = 0;
+        sentMove = null;
+        if (sent != 0)
+            MoveMetrics.record(MoveMetrics.Stage.WIRE, sent);
+    }
+
+    // the server checks every move and does not relay a move it rejects, so it won't come back either
+    private synchronized void rejected(String response) {
+        String line = response.substring(response.indexOf(' ', 6) + 1);
+        echoes.remove(line);
+        // a text move is checked as the next move of the game, that is the own last one
+        takeBack(game.getMoves());
+        showMessage("The server rejected the move " + line + ": " + response.substring(6, response.indexOf(' ', 6)));
+    }
+
+    // the board already shows the rejected move, so it is taken back and the board shows the position before it,
+    // if the game is out of step in another way the relay is asked for its position
+    private void takeBack(int number) {
+        if (number == game.getMoves() && !isThisPlayersTurn())
+            game.takeBack(number);
+        else if (token != 0 && state == State.PLAYING)
+            resume(connection);
+    }
+
     /**
-     * This method is for listening to the incoming moves
+     * This method is for determining the color of THIS player during the handshake
+     * @param response the line that arrived
      * */
-    private synchronized void listenForMoves() {
-        try {
-            String response;
-            while ((response = in.readLine()) != null) {
-
-                if(castlingFormat.matcher(response).matches()){
-                    String[] moveParts = response.split(" . ");
-                    System.out.println(moveParts[0]);
-                    updateBoard(moveParts[0], null);
-                    System.out.println(moveParts[1]);
-                    updateBoard(moveParts[1], null);
-                    switchPlayer();
-                    break;
-                }
+    private void determineColor(String response) {
+        // the relay relays binary frames, the id of the game is needed in them
+        if (response.startsWith("BINARY ")) {
+            serverBinary = true;
+            gameId = Integer.parseInt(response.substring(7));
+        }
+        // if the incoming message is "WHITE" it means that the white player has connected to the server
+        else if (response.startsWith("WHITE")) {
+            state = State.WAITING_FOR_START;
+            binary = serverBinary && response.equals("WHITE BINARY");
+            whitePlayer = false;
+            send(binary ? "BLACK BINARY" : "BLACK");
+            startGame(false);
+        }
+    }
 
-                String[] moveParts = response.split(" ");
-                String promotedPieceType = null;
-                if (moveParts.length > 1 && (moveParts[1].equals("Queen") || moveParts[1].equals("Rook") || moveParts[1].equals("Bishop") || moveParts[1].equals("Knight"))) {
-                    promotedPieceType = moveParts[1];
-                }
-                if(format.matcher(moveParts[0]).matches()){
-                    updateBoard(moveParts[0], promotedPieceType);
-                    switchPlayer();
-                    break;
-                }
-            }
-        } catch (IOException ex) {
-            JOptionPane.showMessageDialog(null, "Could not connect to the socket.", "Error", JOptionPane.ERROR_MESSAGE);
+    // nobody answered, so this is the first player connecting, hence it's the white player
+    private void becomeWhite() {
+        state = State.WAITING_FOR_BLACK;
+        whitePlayer = true;
+        startGame(true);
+        announce();
+    }
+
+    // the board is only changed on the Swing event thread
+    private void startGame(boolean whitePlayer) {
+        SwingUtilities.invokeLater(() -> {
+            board.setWhitePlayer(whitePlayer);
+            board.setWhitesTurn(true);
+            board.startGame();
+        });
+    }
+
+    // the writer's own idea of whose turn it is, the board's is only for the Swing event thread
+    private boolean isThisPlayersTurn() {
+        return game.isWhiteToMove() == whitePlayer;
+    }
+
+    // white announces itself until black has answered, older clients only listen for this
+    private void announce() {
+        if (state == State.WAITING_FOR_BLACK) {
+            send("WHITE");
+            loop.schedule(ANNOUNCE_MILLIS, this::announce);
         }
     }
 
     /**
-     * This method is for sending the move to the server
-     * @param source the square where the mouse pressed
-     * @param destination the square where the mouse released
-     * @param rookSource the square where the rook is
-     * @param rookDestination the square where the rook should be after the castling move
-     * @param promotedPieceType if there is a promotion, this holds the type of the piece
+     * This method is for handling an incoming move, it is parsed the same way the relay parses it
+     * @param response the line that arrived
+     * */
+    private void listenForMoves(String response) {
+        long start = System.nanoTime();
+        // castling also names the rook's move, the position moves the rook together with the king
+        int move = Protocol.parseMove(response);
+        if (move == -1)
+            return;
+        MoveMetrics.record(MoveMetrics.Stage.PARSE, start);
+        // the writer makes the move, the board gets the new position on the Swing event thread
+        game.remoteMove(move);
+    }
+
+    /**
+     * This method is for sending the move to the server, it is called by the writer after the move was made
+     * @param move the move as encoded by Move
+     * @param number the number of the move in the game
      * */
-    private synchronized void sendMove(Square source, Square destination, Square rookSource, Square rookDestination, String promotedPieceType) {
-        try {
-            String move = Board.toSquareName(source.getRow(), source.getCol()) +
-                    Board.toSquareName(destination.getRow(), destination.getCol());
+    private void sendMove(int move, int number) {
+        long start = System.nanoTime();
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int promotion = Move.promotion(move);
+        if (binary && !ended) {
+            // castling is sent as the king's move, the position moves the rook
+            moveSent = start;
+            if (!connection.send(Protocol.encodeMove(gameId, number, move)) && state == State.PLAYING)
+                showMessage("Could not connect to the socket.");
+            MoveMetrics.record(MoveMetrics.Stage.SEND, start);
+            return;
+        }
 
-            if(board.isTheEndOfTheGame())
-                move = "END";
+        String line = Board.toSquareName(Position.row(from), Position.col(from)) +
+                Board.toSquareName(Position.row(to), Position.col(to));
 
-            if (rookSource != null && rookDestination != null) {
-                move += " . " + Board.toSquareName(rookSource.getRow(), rookSource.getRow()) +
-                        Board.toSquareName(rookDestination.getRow(), rookDestination.getCol());
-            }
+        if(ended)
+            line = "END";
 
-            // Add the promoted piece type to the move string
-            if (promotedPieceType != null) {
-                move += " " + promotedPieceType;
-            }
+        // a king that moved two squares has castled, the rook's move is sent as well
+        int piece = game.getPosition().pieceAt(to);
+        if (Position.typeOf(piece) == Position.KING && Math.abs(to - from) == 2) {
+            int rookFrom = to > from ? to + 1 : to - 2;
+            int rookTo = to > from ? to - 1 : to + 1;
+            line += " . " + Board.toSquareName(Position.row(rookFrom), Position.col(rookFrom)) +
+                    Board.toSquareName(Position.row(rookTo), Position.col(rookTo));
+        }
 
-            out.println(move);
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(null, "Could not connect to the socket.", "Error", JOptionPane.ERROR_MESSAGE);
+        // Add the promoted piece type to the move string
+        if (promotion != Position.EMPTY) {
+            line += " " + Position.typeName(promotion);
         }
+
+        moveSent = start;
+        sentMove = line;
+        if (!send(line) && state == State.PLAYING)
+            showMessage("Could not connect to the socket.");
+        MoveMetrics.record(MoveMetrics.Stage.SEND, start);
+    }
+
+    /**
+     * This method sends a line to the server without waiting for it to be written
+     * @param line the line
+     * @return false if the connection is closed or the server does not read
+     * */
+    private synchronized boolean send(String line) {
+        if (serverEchoes)
+            echoes.addLast(line);
+        return connection.send(line);
     }
 
     /**
-     * This method is attached to the board and recognizes when a move is made
+     * This method is attached to the board and recognizes when a move is made, it is called on the Swing event thread
      * @param source the square where the mouse pressed
      * @param destination the square where the mouse released
      * @param rookSource the square where the rook is
@@ -199,81 +462,62 @@ public class ChessClient implements Runnable, MoveListener{
     @Override
     public void moveMade(Square source, Square destination, Square rookSource, Square rookDestination, String promotedPieceType) {
         if(board.isThisPlayersTurn()){
-            sendMove(source, destination, rookSource, rookDestination, promotedPieceType);
-            switchPlayer();
+            // the board already shows the move, the writer makes it on the game and sends it
+            board.setWhitesTurn(!board.isWhitesTurn());
+            ended = board.isTheEndOfTheGame();
+            game.localMove(Move.of(source.getIndex(), destination.getIndex(), Position.typeFromName(promotedPieceType)));
         }
     }
 
     /**
-     * This method is used for updating THIS player's board with the other player's moves
-     * @param move the move that the other player made
-     * @param promotedPieceType if there is a promotion, this holds the type of the piece
+     * This method is called by the writer after a move was made on the game
+     * @param move the move as encoded by Move
+     * @param number the number of the move in the game
+     * @param local true if this player made the move
      * */
-    private synchronized void updateBoard(String move, String promotedPieceType) {
-
-        // parsing the incoming String
-        String sourceSquareName = move.substring(0, 2);
-        String destinationSquareName = move.substring(2, 4);
-
-        // translating the String to Integers that correlates to coordinates on the board
-        int[] sourceIndices = Board.fromSquareName(sourceSquareName);
-        int[] destinationIndices = Board.fromSquareName(destinationSquareName);
-
-        // getting the squares with the given coordinates
-        Square sourceSquare = board.getSquare(sourceIndices[0], sourceIndices[1]);
-        Square destinationSquare = board.getSquare(destinationIndices[0], destinationIndices[1]);
-
-        // updating the board with the given squares
-        Piece piece = sourceSquare.getPiece();
-        sourceSquare.setPiece(null);
-        if (promotedPieceType != null) {
-            switch (promotedPieceType) {
-                case "Queen":
-                    piece = new Queen(piece.isWhite(), destinationSquare);
-                    break;
-                case "Rook":
-                    piece = new Rook(piece.isWhite(), destinationSquare);
-                    break;
-                case "Bishop":
-                    piece = new Bishop(piece.isWhite(), destinationSquare);
-                    break;
-                case "Knight":
-                    piece = new Knight(piece.isWhite(), destinationSquare);
-                    break;
-            }
-        }
-        destinationSquare.setPiece(piece);
+    @Override
+    public void moveApplied(int move, int number, boolean local) {
+        if (local)
+            sendMove(move, number);
+        if (local && ended)
+            game.finish();
+        // the binary format needs no NEXT, the number of the move tells whose turn it is
+        if (!binary)
+            send("NEXT");
     }
 
     /**
-     * This method switches the players' turn
+     * This method is called by the writer when a move of the opponent is not legal on the game
+     * @param move the move as encoded by Move
+     * @param number the number the move would have had in the game
      * */
-    private void switchPlayer() {
-        board.setWhitesTurn(!board.isWhitesTurn());
-        out.println("NEXT");
+    @Override
+    public void moveRejected(int move, int number) {
+        // this client and the relay are out of step, the relay is asked for its position
+        if (token != 0 && state == State.PLAYING)
+            resume(connection);
+        else
+            showMessage("The move " + Move.toString(move) + " of the opponent is not legal");
+    }
+
+    private void showMessage(String message) {
+        SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, message, "Error", JOptionPane.ERROR_MESSAGE));
     }
 
     /**
      * This method closes the connections to the server
+     * @param message the reason that is shown before the program exits
      * */
-    private synchronized void kill() {
-        running = false;
-        try {
-            if (out != null) {
-                out.close();
-            }
-            if (in != null) {
-                in.close();
-            }
-            if (socket != null) {
-                socket.close();
-            }
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(null, "Could not exit the program.", "Error", JOptionPane.ERROR_MESSAGE);;
-        }
-        System.exit(1);
+    private void kill(String message) {
+        // the game is recorded before the network thread stops
+        game.finish();
+        state = State.CLOSED;
+        connection.close(null);
+        loop.close();
+        // the player has read the message before the program exits
+        SwingUtilities.invokeLater(() -> {
+            JOptionPane.showMessageDialog(null, message, "Error", JOptionPane.ERROR_MESSAGE);
+            System.exit(1);
+        });
     }
 }
-
-
-
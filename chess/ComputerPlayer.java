@@ -0,0 +1,98 @@
+// Emir Adar
+import javax.swing.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class lets a player play against the engine. It listens to the board the same way as ChessClient,
+ * but instead of sending the move to a server it lets the engine answer on a background thread.
+ * */
+public class ComputerPlayer implements MoveListener {
+
+    // declaring variables
+    private final Board board;
+    private final Engine engine;
+    private final long millis;
+    // the moves of the game, it is added to the PGN file when it has ended
+    private final GameRecord record = new GameRecord();
+    // the file is written on its own thread, the Swing event thread never waits for the disk
+    private final ExecutorService archive = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "Computer archive");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * This is the constructor for this class
+     * @param board the board the human plays on
+     * @param whitePlayer true if the human plays white
+     * @param millis the time the engine may think per move, in milliseconds
+     * */
+    public ComputerPlayer(Board board, boolean whitePlayer, long millis) {
+        this.board = board;
+        this.engine = new Engine();
+        this.millis = millis;
+        this.board.setMoveListener(this);
+        this.board.setWhitePlayer(whitePlayer);
+        record.setTag("Event", "Game against the computer");
+        record.setTag(whitePlayer ? "White" : "Black", System.getProperty("user.name", "?"));
+        record.setTag(whitePlayer ? "Black" : "White", "Computer");
+        record.setStartFen(Fen.toFen(board.getPosition()));
+        this.board.setWhitesTurn(board.getPosition().isWhiteToMove());
+        this.board.startGame();
+        if (board.getPosition().isWhiteToMove() != whitePlayer)
+            think();
+    }
+
+    /**
+     * This method is attached to the board and recognizes when the human made a move
+     * @param source the square where the mouse pressed
+     * @param destination the square where the mouse released
+     * @param rookSource the square where the rook is
+     * @param rookDestination the square where the rook should be after the castling move
+     * @param promotedPieceType if there is a promotion, this holds the type of the piece
+     * */
+    @Override
+    public void moveMade(Square source, Square destination, Square rookSource, Square rookDestination, String promotedPieceType) {
+        if (board.isThisPlayersTurn()) {
+            record.addMove(Move.of(source.getIndex(), destination.getIndex(), Position.typeFromName(promotedPieceType)));
+            board.setWhitesTurn(!board.isWhitesTurn());
+            think();
+        }
+    }
+
+    // the engine answers on its own thread, the move is played on the Swing event thread
+    private void think() {
+        engine.think(board.getPosition(), millis, move -> SwingUtilities.invokeLater(() -> playMove(move)));
+    }
+
+    /**
+     * This method plays the engine's move on the board
+     * @param move the encoded move, Move.NONE if the engine has no legal move
+     * */
+    private void playMove(int move) {
+        if (move == Move.NONE) {
+            board.setTheEndOfTheGame(true);
+            boolean checkmate = board.getPosition().isInCheck(!board.isWhitePlayer());
+            record.setResult(!checkmate ? "1/2-1/2" : board.isWhitePlayer() ? "1-0" : "0-1");
+            archive.execute(() -> PgnWriter.record(record));
+            String message = checkmate ? "Checkmate, you won!" : "Stalemate!";
+            JOptionPane.showMessageDialog(board, message, "End of the game", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        Square source = board.getSquare(Position.row(Move.from(move)), Position.col(Move.from(move)));
+        Square destination = board.getSquare(Position.row(Move.to(move)), Position.col(Move.to(move)));
+        int promotion = Move.promotion(move);
+        board.applyMove(source, destination, promotion == Position.EMPTY ? null : Position.typeName(promotion));
+        record.addMove(move);
+        board.setWhitesTurn(!board.isWhitesTurn());
+
+        if (board.getPosition().isCheckmate(board.isWhitePlayer())) {
+            board.setTheEndOfTheGame(true);
+            record.setResult(board.isWhitePlayer() ? "0-1" : "1-0");
+            archive.execute(() -> PgnWriter.record(record));
+            JOptionPane.showMessageDialog(board, "Checkmate, the computer won!", "End of the game", JOptionPane.INFORMATION_MESSAGE);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+// Emir Adar
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is one non-blocking socket driven by a NetworkLoop. Messages are frames: a text frame
+ * is one line ending with a newline, a binary frame is described in Protocol. Any thread may send, the frames are queued and written by the loop
+ * when the socket can take them, so a slow peer never blocks the sender. If too much is queued for a peer
+ * that does not read, send refuses more frames instead of using up the memory.
+ * */
+public class Connection {
+
+    // the most bytes that may wait to be written to one peer
+    public static final int MAX_QUEUED = 256 * 1024;
+    private static final int MAX_FRAME = 8 * 1024;
+    private static final int BATCH = 64;
+
+    /**
+     * This interface receives the events of a connection, all methods are called on the loop's thread
+     * */
+    public interface Handler {
+        /**
+         * This method is called when the connection is open
+         * */
+        default void opened(Connection connection) {}
+
+        /**
+         * This method is called for every text frame
+         * @param connection the connection the frame arrived on
+         * @param line the frame without the newline
+         * */
+        void received(Connection connection, String line);
+
+        /**
+         * This method is called for every binary frame
+         * @param connection the connection the frame arrived on
+         * @param frame the whole frame with its header, it is only valid during the call
+         * */
+        default void received(Connection connection, ByteBuffer frame) {}
+
+        /**
+         * This method is called once when the connection is closed
+         * @param connection the connection
+         * @param cause the error that closed it, or null if it was closed normally
+         * */
+        default void closed(Connection connection, IOException cause) {}
+    }
+
+    // declaring variables
+    private final NetworkLoop loop;
+    private final Handler handler;
+    private final Queue<ByteBuffer> output = new ConcurrentLinkedQueue<>();
+    private final AtomicLong queued = new AtomicLong();
+    private final ArrayDeque<ByteBuffer> writing = new ArrayDeque<>();
+    private final ByteBuffer[] batch = new ByteBuffer[BATCH];
+    private final ByteBuffer input = ByteBuffer.allocate(MAX_FRAME);
+    private SocketChannel channel;
+    private SelectionKey key;
+    private volatile boolean open;
+    private volatile boolean closed;
+    private Object attachment;
+
+    /**
+     * This is the constructor for this class
+     * @param loop the loop that drives the connection
+     * @param handler receives the events of the connection
+     * */
+    Connection(NetworkLoop loop, Handler handler) {
+        this.loop = loop;
+        this.handler = handler;
+    }
+
+    /**
+     * This method registers an open or connecting channel with the loop's selector
+     * */
+    void register(SocketChannel channel, Selector selector, int ops) throws ClosedChannelException {
+        this.channel = channel;
+        this.key = channel.register(selector, ops, this);
+    }
+
+    /**
+     * This method is called by the loop when the channel is connected
+     * */
+    void opened() {
+        open = true;
+        key.interestOps(SelectionKey.OP_READ);
+        handler.opened(this);
+        flush();
+    }
+
+    /**
+     * This method is called by the loop when a pending connect has finished
+     * */
+    void finishConnect() {
+        try {
+            if (channel.finishConnect())
+                opened();
+        } catch (IOException e) {
+            close(e);
+        }
+    }
+
+    /**
+     * This method sends a text frame, the newline is added
+     * @param line the text, it must not contain a newline
+     * @return false if the connection is closed or the peer has too much unread data
+     * */
+    public boolean send(String line) {
+        return send(encode(line));
+    }
+
+    /**
+     * This method encodes a text frame, the same frame can be sent to several connections with duplicate
+     * @param line the text, it must not contain a newline
+     * @return the encoded frame
+     * */
+    public static ByteBuffer encode(String line) {
+        byte[] bytes = new byte[line.length() + 1];
+        for (int i = 0; i < line.length(); i++)
+            bytes[i] = (byte) line.charAt(i);
+        bytes[line.length()] = '\n';
+        return ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * This method sends one or more encoded frames as they are
+     * @param frames the bytes, they are not copied and must not be changed afterwards
+     * @return false if the connection is closed or the peer has too much unread data
+     * */
+    public boolean send(ByteBuffer frames) {
+        if (closed)
+            return false;
+        int size = frames.remaining();
+        if (queued.addAndGet(size) > MAX_QUEUED) {
+            queued.addAndGet(-size);
+            return false;
+        }
+        output.add(frames);
+        if (loop.inLoop()) {
+            if (open)
+                flush();
+        } else {
+            loop.execute(() -> {
+                if (open)
+                    flush();
+            });
+        }
+        return true;
+    }
+
+    /**
+     * This method gets the number of bytes that are waiting to be written
+     * */
+    public long getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * This method writes as much of the queued frames as the socket takes, several frames are written with one call
+     * */
+    void flush() {
+        if (closed)
+            return;
+        try {
+            while (true) {
+                ByteBuffer next;
+                while (writing.size() < BATCH && (next = output.poll()) != null)
+                    writing.add(next);
+                if (writing.isEmpty()) {
+                    key.interestOps(SelectionKey.OP_READ);
+                    return;
+                }
+
+                int count = 0;
+                for (ByteBuffer buffer : writing)
+                    batch[count++] = buffer;
+                long written = channel.write(batch, 0, count);
+                Arrays.fill(batch, 0, count, null);
+                queued.addAndGet(-written);
+                while (!writing.isEmpty() && !writing.peek().hasRemaining())
+                    writing.poll();
+
+                // the socket is full, the loop continues when the peer has read some of it
+                if (!writing.isEmpty()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            close(e);
+        }
+    }
+
+    /**
+     * This method reads what has arrived and hands every complete frame to the handler
+     * */
+    void read() {
+        try {
+            int count = channel.read(input);
+            if (count < 0) {
+                close(null);
+                return;
+            }
+            input.flip();
+            int start = input.position();
+            int i = start;
+            while (i < input.limit() && !closed) {
+                if (i == start && Protocol.isBinary(input.get(i))) {
+                    // a binary frame is handed over when all of it has arrived
+                    if (input.limit() - start < Protocol.HEADER)
+                        break;
+                    int end = start + Protocol.HEADER + (input.getShort(start + 1) & 0xFFFF);
+                    if (end > input.limit())
+                        break;
+                    handler.received(this, input.duplicate().position(start).limit(end));
+                    start = i = end;
+                } else if (input.get(i) == '\n') {
+                    handler.received(this, text(start, i));
+                    start = ++i;
+                } else {
+                    i++;
+                }
+            }
+            input.position(start);
+            input.compact();
+            if (!input.hasRemaining())
+                close(new IOException("Frame longer than " + MAX_FRAME + " bytes"));
+        } catch (IOException e) {
+            close(e);
+        }
+    }
+
+    private String text(int start, int end) {
+        if (end > start && input.get(end - 1) == '\r')
+            end--;
+        byte[] bytes = new byte[end - start];
+        input.get(start, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * This method closes the connection, the handler is told once
+     * @param cause the error that closed it, or null
+     * */
+    public void close(IOException cause) {
+        if (!loop.inLoop()) {
+            loop.execute(() -> close(cause));
+            return;
+        }
+        if (closed)
+            return;
+        closed = true;
+        open = false;
+        try {
+            if (key != null)
+                key.cancel();
+            if (channel != null)
+                channel.close();
+        } catch (IOException e) {
+            // the channel is closed anyway
+        }
+        output.clear();
+        writing.clear();
+        handler.closed(this, cause);
+    }
+
+    /**
+     * This method checks if the connection is open
+     * */
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * This method gets the object attached to the connection, servers keep their state of the peer there
+     * */
+    public Object getAttachment() {
+        return attachment;
+    }
+
+    /**
+     * This method attaches an object to the connection
+     * @param attachment the object
+     * */
+    public void setAttachment(Object attachment) {
+        this.attachment = attachment;
+    }
+}
@@ -0,0 +1,201 @@
+// Emir Adar
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+/**
+ * This class is the computer opponent's brain, it runs the search on a background thread
+ * so that the caller, for example the Swing event thread, never waits for it.
+ * Every search uses all the configured threads: the main search decides the move and the helpers
+ * search the same position at the same time, sharing the transposition table.
+ * Usage for analysis: java Engine [threads] [milliseconds] [FEN]
+ * */
+public class Engine {
+
+    // the number of search threads used when none is given, can be set with -Dchess.threads=<n>
+    public static final int DEFAULT_THREADS = Integer.getInteger("chess.threads", Runtime.getRuntime().availableProcessors());
+
+    private final TranspositionTable table;
+    private final int threads;
+    private final ExecutorService helpers;
+    private final Thread thread;
+    private final Object lock = new Object();
+    private Position pending;
+    private long pendingMillis;
+    private IntConsumer pendingCallback;
+    private volatile Search current;
+    private volatile Search[] running = new Search[0];
+    private volatile long lastNodes;
+    private volatile long lastNanos;
+
+    /**
+     * This is the constructor for this class
+     * @param megabytes the size of the transposition table
+     * @param threads the number of search threads, at least 1
+     * */
+    public Engine(int megabytes, int threads) {
+        this.table = new TranspositionTable(megabytes);
+        this.threads = Math.max(1, threads);
+        this.helpers = Executors.newFixedThreadPool(Math.max(1, this.threads - 1), runnable -> {
+            Thread helper = new Thread(runnable, "Engine helper");
+            helper.setDaemon(true);
+            return helper;
+        });
+        this.thread = new Thread(this::run, "Engine");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public Engine(int megabytes) {
+        this(megabytes, DEFAULT_THREADS);
+    }
+
+    public Engine() {
+        this(TranspositionTable.DEFAULT_MEGABYTES, DEFAULT_THREADS);
+    }
+
+    /**
+     * This method starts searching a position in the background, a search that is still running is stopped
+     * @param position the position, it is copied so the caller may keep changing it
+     * @param millis the time budget in milliseconds
+     * @param callback receives the best move on the engine thread, or Move.NONE if there is no legal move
+     * */
+    public void think(Position position, long millis, IntConsumer callback) {
+        synchronized (lock) {
+            pending = new Position(position);
+            pendingMillis = millis;
+            pendingCallback = callback;
+            stop();
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * This method searches a position on the calling thread, it is used for headless analysis
+     * @param position the position, it is copied
+     * @param millis the time budget in milliseconds
+     * @return the best move, or Move.NONE if there is no legal move
+     * */
+    public int search(Position position, long millis) {
+        table.newSearch();
+        long start = System.nanoTime();
+
+        // every thread searches its own copy of the position
+        Search[] searches = new Search[threads];
+        for (int i = 0; i < threads; i++)
+            searches[i] = new Search(new Position(position), table, i);
+        current = searches[0];
+        running = searches;
+
+        Future<?>[] futures = new Future<?>[threads - 1];
+        for (int i = 1; i < threads; i++) {
+            Search helper = searches[i];
+            futures[i - 1] = helpers.submit(() -> helper.search(millis, Search.MAX_PLY));
+        }
+
+        // the main search decides the move, the helpers are stopped as soon as it is done
+        int move = searches[0].search(millis, Search.MAX_PLY);
+        for (Search search : searches)
+            search.stop();
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (Exception e) {
+                // a failing helper only costs speed, the main search has the move
+            }
+        }
+
+        long nodes = 0;
+        for (Search search : searches)
+            nodes += search.getNodes();
+        lastNodes = nodes;
+        lastNanos = System.nanoTime() - start;
+        return move;
+    }
+
+    /**
+     * This method stops the running search, its callback still receives the best move found so far
+     * */
+    public void stop() {
+        for (Search search : running)
+            search.stop();
+    }
+
+    /**
+     * This method gets the number of positions all threads searched together in the last search
+     * */
+    public long getNodes() {
+        return lastNodes;
+    }
+
+    /**
+     * This method gets how many positions per second all threads searched together in the last search
+     * */
+    public long getNodesPerSecond() {
+        return lastNodes * 1_000_000_000L / Math.max(1, lastNanos);
+    }
+
+    /**
+     * This method gets the number of search threads
+     * */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * This method gets the best move of the running or last search
+     * @return the best move so far, or Move.NONE if no iteration has finished yet
+     * */
+    public int getBestMove() {
+        Search search = current;
+        return search == null ? Move.NONE : search.getBestMove();
+    }
+
+    /**
+     * This method gets the running or last search, it can be used to show the depth, score and nodes
+     * */
+    public Search getCurrentSearch() {
+        return current;
+    }
+
+    // waiting for positions to search, one at a time
+    private void run() {
+        while (true) {
+            Position position;
+            long millis;
+            IntConsumer callback;
+            synchronized (lock) {
+                while (pending == null) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                position = pending;
+                millis = pendingMillis;
+                callback = pendingCallback;
+                pending = null;
+            }
+            int move = search(position, millis);
+            callback.accept(move);
+        }
+    }
+
+    public static void main(String[] args) {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_THREADS;
+        long millis = args.length > 1 ? Long.parseLong(args[1]) : 5000;
+        StringBuilder fen = new StringBuilder();
+        for (int i = 2; i < args.length; i++)
+            fen.append(args[i]).append(' ');
+        Position position = Fen.parse(fen.length() > 0 ? fen.toString() : Fen.STARTING_POSITION);
+
+        Engine engine = new Engine(TranspositionTable.DEFAULT_MEGABYTES, threads);
+        int move = engine.search(position, millis);
+        Search search = engine.getCurrentSearch();
+        System.out.println("Best move: " + (move == Move.NONE ? "none" : Move.toString(move)));
+        System.out.println("Depth: " + search.getCompletedDepth() + ", score: " + search.getBestScore());
+        System.out.println("Threads: " + threads + ", nodes: " + engine.getNodes() + ", nodes/s: " + engine.getNodesPerSecond());
+    }
+}
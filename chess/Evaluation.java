@@ -0,0 +1,106 @@
+// Emir Adar
+
+/**
+ * This class scores a position with the material and a table per piece type that rewards good squares.
+ * The tables are written from white's point of view with the eighth rank first.
+ * */
+public final class Evaluation {
+
+    private static final int[] VALUES = {100, 320, 330, 500, 900, 0};
+
+    private static final int[][] TABLES = {
+            { // pawn
+                    0,  0,  0,  0,  0,  0,  0,  0,
+                    50, 50, 50, 50, 50, 50, 50, 50,
+                    10, 10, 20, 30, 30, 20, 10, 10,
+                    5,  5, 10, 25, 25, 10,  5,  5,
+                    0,  0,  0, 20, 20,  0,  0,  0,
+                    5, -5,-10,  0,  0,-10, -5,  5,
+                    5, 10, 10,-20,-20, 10, 10,  5,
+                    0,  0,  0,  0,  0,  0,  0,  0
+            },
+            { // knight
+                    -50,-40,-30,-30,-30,-30,-40,-50,
+                    -40,-20,  0,  0,  0,  0,-20,-40,
+                    -30,  0, 10, 15, 15, 10,  0,-30,
+                    -30,  5, 15, 20, 20, 15,  5,-30,
+                    -30,  0, 15, 20, 20, 15,  0,-30,
+                    -30,  5, 10, 15, 15, 10,  5,-30,
+                    -40,-20,  0,  5,  5,  0,-20,-40,
+                    -50,-40,-30,-30,-30,-30,-40,-50
+            },
+            { // bishop
+                    -20,-10,-10,-10,-10,-10,-10,-20,
+                    -10,  0,  0,  0,  0,  0,  0,-10,
+                    -10,  0,  5, 10, 10,  5,  0,-10,
+                    -10,  5,  5, 10, 10,  5,  5,-10,
+                    -10,  0, 10, 10, 10, 10,  0,-10,
+                    -10, 10, 10, 10, 10, 10, 10,-10,
+                    -10,  5,  0,  0,  0,  0,  5,-10,
+                    -20,-10,-10,-10,-10,-10,-10,-20
+            },
+            { // rook
+                    0,  0,  0,  0,  0,  0,  0,  0,
+                    5, 10, 10, 10, 10, 10, 10,  5,
+                    -5,  0,  0,  0,  0,  0,  0, -5,
+                    -5,  0,  0,  0,  0,  0,  0, -5,
+                    -5,  0,  0,  0,  0,  0,  0, -5,
+                    -5,  0,  0,  0,  0,  0,  0, -5,
+                    -5,  0,  0,  0,  0,  0,  0, -5,
+                    0,  0,  0,  5,  5,  0,  0,  0
+            },
+            { // queen
+                    -20,-10,-10, -5, -5,-10,-10,-20,
+                    -10,  0,  0,  0,  0,  0,  0,-10,
+                    -10,  0,  5,  5,  5,  5,  0,-10,
+                    -5,  0,  5,  5,  5,  5,  0, -5,
+                    0,  0,  5,  5,  5,  5,  0, -5,
+                    -10,  5,  5,  5,  5,  5,  0,-10,
+                    -10,  0,  5,  0,  0,  0,  0,-10,
+                    -20,-10,-10, -5, -5,-10,-10,-20
+            },
+            { // king
+                    -30,-40,-40,-50,-50,-40,-40,-30,
+                    -30,-40,-40,-50,-50,-40,-40,-30,
+                    -30,-40,-40,-50,-50,-40,-40,-30,
+                    -30,-40,-40,-50,-50,-40,-40,-30,
+                    -20,-30,-30,-40,-40,-30,-30,-20,
+                    -10,-20,-20,-20,-20,-20,-20,-10,
+                    20, 20,  0,  0,  0,  0, 20, 20,
+                    20, 30, 10,  0,  0, 10, 30, 20
+            }
+    };
+
+    private Evaluation() {}
+
+    /**
+     * This method scores the position
+     * @param position the position
+     * @return the score in centipawns from the point of view of the side to move
+     * */
+    public static int evaluate(Position position) {
+        int score = 0;
+        for (int piece = 0; piece < 12; piece++) {
+            boolean white = Position.isWhite(piece);
+            int type = Position.typeOf(piece);
+            long bits = position.getPieces(piece);
+            while (bits != 0) {
+                int square = Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                // the tables start on the eighth rank, so white squares are mirrored
+                int value = VALUES[type] + TABLES[type][white ? square ^ 56 : square];
+                score += white ? value : -value;
+            }
+        }
+        return position.isWhiteToMove() ? score : -score;
+    }
+
+    /**
+     * This method gets the material value of a piece type
+     * @param type the piece type
+     * @return the value in centipawns, the king is worth 0
+     * */
+    public static int value(int type) {
+        return VALUES[type];
+    }
+}
@@ -0,0 +1,302 @@
+// Emir Adar
+import java.nio.ByteBuffer;
+
+/**
+ * This class reads and writes positions in Forsyth-Edwards Notation (FEN).
+ * The parser walks over the characters once without regular expressions, split or substrings,
+ * so it can read FENs straight out of a larger text or a byte buffer, for example a file with millions of them.
+ * */
+public final class Fen {
+
+    public static final String STARTING_POSITION = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    // the letters of the piece types in the order of their numbers in Position
+    private static final String PIECES = "pnbrqk";
+    private static final String CASTLING = "KQkq";
+
+    private Fen() {}
+
+    /**
+     * This method creates a position from a FEN string
+     * @param fen the FEN string, the clocks may be left out
+     * @return the position
+     * @throws IllegalArgumentException if the string is not a valid FEN
+     * */
+    public static Position parse(CharSequence fen) {
+        return parse(fen, 0, fen.length());
+    }
+
+    /**
+     * This method creates a position from the FEN in a part of a text
+     * @param text the text
+     * @param start the index of the first character of the FEN
+     * @param end the index after the last character of the FEN
+     * @return the position
+     * @throws IllegalArgumentException if the part is not a valid FEN
+     * */
+    public static Position parse(CharSequence text, int start, int end) {
+        return parse(text, start, end, new Position());
+    }
+
+    /**
+     * This method reads the FEN in a part of a text into an existing position, nothing is allocated
+     * unless the FEN is broken, so one position can be used for millions of FENs
+     * @param text the text
+     * @param start the index of the first character of the FEN
+     * @param end the index after the last character of the FEN
+     * @param position the position, what it held before is cleared
+     * @return the same position
+     * @throws IllegalArgumentException if the part is not a valid FEN
+     * */
+    public static Position parse(CharSequence text, int start, int end, Position position) {
+        position.clear();
+        int i = skipSpaces(text, start, end);
+
+        // reading the pieces, starting with the eighth rank, each side needs exactly one king
+        int rank = 7;
+        int file = 0;
+        int whiteKings = 0;
+        int blackKings = 0;
+        for (; i < end && text.charAt(i) > ' '; i++) {
+            char c = text.charAt(i);
+            if (c == '/') {
+                if (file != 8 || rank == 0)
+                    throw invalid(text, start, end);
+                rank--;
+                file = 0;
+            } else if (c >= '1' && c <= '8') {
+                file += c - '0';
+                if (file > 8)
+                    throw invalid(text, start, end);
+            } else {
+                boolean white = c < 'a';
+                int type = PIECES.indexOf(white ? c + ('a' - 'A') : c);
+                if (type < 0 || file > 7)
+                    throw invalid(text, start, end);
+                if (type == Position.KING) {
+                    if (white)
+                        whiteKings++;
+                    else
+                        blackKings++;
+                }
+                position.put(rank * 8 + file, Position.pieceCode(white, type));
+                file++;
+            }
+        }
+        if (rank != 0 || file != 8 || whiteKings != 1 || blackKings != 1)
+            throw invalid(text, start, end);
+
+        // the side to move
+        i = skipSpaces(text, i, end);
+        if (i >= end || (text.charAt(i) != 'w' && text.charAt(i) != 'b'))
+            throw invalid(text, start, end);
+        position.setWhiteToMove(text.charAt(i++) == 'w');
+
+        // the castling rights, "-" if there are none
+        i = skipSpaces(text, i, end);
+        int castlingRights = 0;
+        for (; i < end && text.charAt(i) > ' '; i++) {
+            int right = CASTLING.indexOf(text.charAt(i));
+            if (right >= 0)
+                castlingRights |= 1 << right;
+            else if (text.charAt(i) != '-')
+                throw invalid(text, start, end);
+        }
+        position.setCastlingRights(castlingRights);
+
+        // the en passant square, "-" if there is none
+        i = skipSpaces(text, i, end);
+        if (i >= end)
+            throw invalid(text, start, end);
+        if (text.charAt(i) == '-') {
+            i++;
+        } else {
+            if (i + 1 >= end)
+                throw invalid(text, start, end);
+            char squareFile = text.charAt(i);
+            char squareRank = text.charAt(i + 1);
+            if (squareFile < 'a' || squareFile > 'h' || !isEnPassant(position, (squareRank - '1') * 8 + squareFile - 'a'))
+                throw invalid(text, start, end);
+            position.setEnPassantSquare((squareRank - '1') * 8 + squareFile - 'a');
+            i += 2;
+        }
+
+        // the clocks may be left out
+        i = skipSpaces(text, i, end);
+        if (i < end) {
+            int halfmoveEnd = numberEnd(text, i, end);
+            position.setHalfmoveClock(number(text, i, halfmoveEnd, start, end));
+            i = skipSpaces(text, halfmoveEnd, end);
+            if (i < end) {
+                int fullmoveEnd = numberEnd(text, i, end);
+                position.setFullmoveNumber(number(text, i, fullmoveEnd, start, end));
+                i = skipSpaces(text, fullmoveEnd, end);
+            }
+        }
+        if (i != end)
+            throw invalid(text, start, end);
+        return position;
+    }
+
+    // the square a pawn has just passed with its double step: it is on the third or sixth rank, the pawn is in front
+    // of it, and the square it passed and the one it came from are empty
+    private static boolean isEnPassant(Position position, int square) {
+        boolean white = position.isWhiteToMove();
+        if (square < 0 || square > 63 || Position.rank(square) != (white ? 5 : 2))
+            return false;
+        int pawn = white ? square - 8 : square + 8;
+        int from = white ? square + 8 : square - 8;
+        return position.pieceAt(pawn) == Position.pieceCode(!white, Position.PAWN)
+                && position.pieceAt(square) == Position.EMPTY && position.pieceAt(from) == Position.EMPTY;
+    }
+
+    /**
+     * This method creates a position from the FEN in a part of a buffer of ASCII bytes,
+     * the buffer's position and limit are not changed
+     * @param buffer the buffer
+     * @param start the index of the first byte of the FEN
+     * @param end the index after the last byte of the FEN
+     * @return the position
+     * @throws IllegalArgumentException if the part is not a valid FEN
+     * */
+    public static Position parse(ByteBuffer buffer, int start, int end) {
+        return parse(ascii(buffer), start, end);
+    }
+
+    /**
+     * This method reads the FEN in a part of a buffer of ASCII bytes into an existing position
+     * @param buffer the buffer
+     * @param start the index of the first byte of the FEN
+     * @param end the index after the last byte of the FEN
+     * @param position the position, what it held before is cleared
+     * @return the same position
+     * @throws IllegalArgumentException if the part is not a valid FEN
+     * */
+    public static Position parse(ByteBuffer buffer, int start, int end, Position position) {
+        return parse(ascii(buffer), start, end, position);
+    }
+
+    /**
+     * This method gets a view of a buffer of ASCII bytes as characters, nothing is copied
+     * @param buffer the buffer, the view uses the indexes of the buffer and ends at its limit
+     * */
+    public static CharSequence ascii(ByteBuffer buffer) {
+        return new Ascii(buffer);
+    }
+
+    /**
+     * This method writes a position as a FEN string
+     * @param position the position
+     * @return the FEN string
+     * */
+    public static String toFen(Position position) {
+        return append(position, new StringBuilder(90)).toString();
+    }
+
+    /**
+     * This method writes a position as FEN to the end of a StringBuilder
+     * @param position the position
+     * @param fen the StringBuilder
+     * @return the same StringBuilder
+     * */
+    public static StringBuilder append(Position position, StringBuilder fen) {
+        for (int rank = 7; rank >= 0; rank--) {
+            int empty = 0;
+            for (int file = 0; file < 8; file++) {
+                int piece = position.pieceAt(rank * 8 + file);
+                if (piece == Position.EMPTY) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0)
+                    fen.append((char) ('0' + empty));
+                empty = 0;
+                char letter = PIECES.charAt(Position.typeOf(piece));
+                fen.append(Position.isWhite(piece) ? (char) (letter - ('a' - 'A')) : letter);
+            }
+            if (empty > 0)
+                fen.append((char) ('0' + empty));
+            if (rank > 0)
+                fen.append('/');
+        }
+
+        fen.append(position.isWhiteToMove() ? " w " : " b ");
+        int castlingRights = position.getCastlingRights();
+        if (castlingRights == 0)
+            fen.append('-');
+        for (int right = 0; right < 4; right++) {
+            if ((castlingRights & 1 << right) != 0)
+                fen.append(CASTLING.charAt(right));
+        }
+
+        int enPassant = position.getEnPassantSquare();
+        if (enPassant == Position.EMPTY)
+            fen.append(" -");
+        else
+            fen.append(' ').append((char) ('a' + enPassant % 8)).append((char) ('1' + enPassant / 8));
+        return fen.append(' ').append(position.getHalfmoveClock()).append(' ').append(position.getFullmoveNumber());
+    }
+
+    // spaces, tabs and line ends separate the fields
+    private static int skipSpaces(CharSequence text, int i, int end) {
+        while (i < end && text.charAt(i) <= ' ')
+            i++;
+        return i;
+    }
+
+    private static int numberEnd(CharSequence text, int i, int end) {
+        while (i < end && text.charAt(i) > ' ')
+            i++;
+        return i;
+    }
+
+    private static int number(CharSequence text, int from, int to, int start, int end) {
+        if (from == to || to - from > 6)
+            throw invalid(text, start, end);
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9')
+                throw invalid(text, start, end);
+            value = value * 10 + c - '0';
+        }
+        return value;
+    }
+
+    // the message is only built when the FEN is broken
+    private static IllegalArgumentException invalid(CharSequence text, int start, int end) {
+        return new IllegalArgumentException("Invalid FEN: " + text.subSequence(start, end));
+    }
+
+    // a view of ASCII bytes as characters
+    private static final class Ascii implements CharSequence {
+        private final ByteBuffer buffer;
+
+        Ascii(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int length() {
+            return buffer.limit();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            StringBuilder text = new StringBuilder(end - start);
+            for (int i = start; i < end; i++)
+                text.append(charAt(i));
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return subSequence(0, length()).toString();
+        }
+    }
+}
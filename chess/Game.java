@@ -0,0 +1,443 @@
+// Emir Adar
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class is the relay's state of one game: the two players' connections and how far the game has come.
+ * Every game has its own object, so games never share anything. It is only used on the relay's loop thread.
+ * The game keeps its own position and checks every move with the same rules as the board before relaying it,
+ * an illegal move is only answered with an error to the player who sent it.
+ * Every move is kept in a compact log, so a player whose connection dropped can come back with its resume
+ * token and only get the moves it missed.
+ * Spectators get a snapshot of the position when they start watching and then every move as a move frame,
+ * each move is encoded once and the same bytes are queued for all of them.
+ * */
+public class Game {
+
+    /**
+     * This enum holds the states of a game
+     * */
+    public enum State { WAITING, PLAYING, FINISHED }
+
+    // declaring variables
+    private final int id;
+    private final Connection[] players = new Connection[2];
+    private int playerCount;
+    private State state = State.WAITING;
+    private int lines;
+    private boolean closed;
+    private final Position position = Position.startingPosition();
+    // the places of the players in players, -1 until they have told their color
+    private int white = -1;
+    private int black = -1;
+    // the secret a player uses to take its place again after its connection dropped, 0 until it is given
+    private final long[] tokens = new long[2];
+    // the moves made in the game as encoded by Move, the next move has number moves + 1
+    private short[] log = new short[64];
+    private int moves;
+    private int disconnects;
+    private final List<Connection> spectators = new ArrayList<>();
+
+    // a snapshot is sent instead of the moves when a player has missed more than this
+    private static final int MAX_CATCH_UP = 64;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * This is the constructor for this class
+     * @param id the number of the game on the relay
+     * */
+    public Game(int id) {
+        this.id = id;
+    }
+
+    /**
+     * This method lets a player join the game
+     * @param connection the player's connection
+     * @return false if the game already has two players
+     * */
+    public boolean join(Connection connection) {
+        if (playerCount == players.length)
+            return false;
+        players[playerCount++] = connection;
+        connection.setAttachment(this);
+        return true;
+    }
+
+    /**
+     * This method takes a client out of the game before it has started, for example a client that was joined
+     * because its first line came late, a spectator leaves at any time
+     * @param connection the client's connection
+     * @return false if the client is a player of a game that has started, or not in this game
+     * */
+    public boolean leave(Connection connection) {
+        int slot = slotOf(connection);
+        if (slot == -1) {
+            if (!unwatch(connection))
+                return false;
+        } else {
+            if (state != State.WAITING)
+                return false;
+            // the players after it move up one place, their colors and tokens with them
+            for (int i = slot; i < playerCount - 1; i++) {
+                players[i] = players[i + 1];
+                tokens[i] = tokens[i + 1];
+            }
+            playerCount--;
+            players[playerCount] = null;
+            tokens[playerCount] = 0;
+            white = white == slot ? -1 : white > slot ? white - 1 : white;
+            black = black == slot ? -1 : black > slot ? black - 1 : black;
+        }
+        connection.setAttachment(null);
+        return true;
+    }
+
+    /**
+     * This method lets a spectator watch the game, it gets the position first and then the moves
+     * @param connection the spectator's connection
+     * */
+    public void watch(Connection connection) {
+        spectators.add(connection);
+        connection.setAttachment(this);
+        connection.send(Protocol.encodeSnapshot(id, moves, position));
+    }
+
+    /**
+     * This method removes a spectator whose connection was closed
+     * @param connection the connection
+     * @return false if the connection is not a spectator of this game
+     * */
+    public boolean unwatch(Connection connection) {
+        int index = spectators.indexOf(connection);
+        if (index == -1)
+            return false;
+        // the last spectator takes the place, the order does not matter
+        Connection last = spectators.remove(spectators.size() - 1);
+        if (index < spectators.size())
+            spectators.set(index, last);
+        return true;
+    }
+
+    /**
+     * This method gets the number of spectators
+     * */
+    public int getSpectators() {
+        return spectators.size();
+    }
+
+    /**
+     * This method handles a player whose connection has dropped
+     * @param connection the player's connection
+     * @return true if the player may come back, false if the game has to be closed
+     * */
+    public boolean disconnected(Connection connection) {
+        int slot = slotOf(connection);
+        if (slot == -1)
+            return true;
+        players[slot] = null;
+        disconnects++;
+        return state == State.PLAYING && tokens[slot] != 0;
+    }
+
+    /**
+     * This method gives a player that comes back its place in the game
+     * @param connection the player's new connection
+     * @param token the player's resume token
+     * @return false if the token does not belong to this game
+     * */
+    public boolean resume(Connection connection, long token) {
+        int own = slotOf(connection);
+        for (int slot = 0; slot < playerCount; slot++) {
+            // a player that is still in the game can only take its own place again
+            if (token != 0 && tokens[slot] == token && (own == -1 || own == slot)) {
+                Connection old = players[slot];
+                players[slot] = connection;
+                connection.setAttachment(this);
+                // the relay may not have noticed yet that the old connection is gone
+                if (old != null && old != connection) {
+                    old.setAttachment(null);
+                    old.close(null);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * This method sends a player that came back what it missed: the moves after its last one, all in one write,
+     * or a snapshot of the position if it missed many or knows of moves the game never got.
+     * The catch up ends with a "RESUMED moves" line.
+     * @param connection the player's connection
+     * @param last the number of moves the player knows of
+     * */
+    public void catchUp(Connection connection, int last) {
+        if (last < 0 || last > moves || moves - last > MAX_CATCH_UP) {
+            connection.send(Protocol.encodeSnapshot(id, moves, position));
+        } else if (last < moves) {
+            ByteBuffer frames = ByteBuffer.allocate((moves - last) * Protocol.MOVE_SIZE);
+            for (int i = last; i < moves; i++)
+                Protocol.putMove(frames, id, i + 1, log[i] & 0xFFFF);
+            connection.send(frames.flip());
+        }
+        connection.send("RESUMED " + moves);
+    }
+
+    /**
+     * This method checks if a player has left and not come back
+     * */
+    public boolean isMissingPlayer() {
+        for (int slot = 0; slot < playerCount; slot++) {
+            if (players[slot] == null)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * This method gets how many times a player's connection has dropped, it tells a timer if a player left again
+     * */
+    public int getDisconnects() {
+        return disconnects;
+    }
+
+    private int slotOf(Connection connection) {
+        for (int slot = 0; slot < playerCount; slot++) {
+            if (players[slot] == connection)
+                return slot;
+        }
+        return -1;
+    }
+
+    // a color is claimed once by one player before the game starts, the player gets its resume token then,
+    // white announces itself more than once so the same claim can come again
+    private boolean claim(Connection sender, boolean whiteColor) {
+        int slot = slotOf(sender);
+        int claimed = whiteColor ? white : black;
+        int other = whiteColor ? black : white;
+        if (state != State.WAITING || slot == -1 || slot == other || (claimed != -1 && claimed != slot))
+            return false;
+        if (whiteColor)
+            white = slot;
+        else
+            black = slot;
+        if (tokens[slot] == 0) {
+            tokens[slot] = RANDOM.nextLong() | 1;
+            sender.send("TOKEN " + id + " " + Long.toHexString(tokens[slot]));
+        }
+        return true;
+    }
+
+    /**
+     * This method ends the game when a player has left, the other players are disconnected
+     * @return false if the game was already closed
+     * */
+    public boolean close() {
+        if (closed)
+            return false;
+        closed = true;
+        state = State.FINISHED;
+        for (int i = 0; i < playerCount; i++) {
+            Connection player = players[i];
+            players[i] = null;
+            if (player != null)
+                player.close(null);
+        }
+        // a closed spectator removes itself from the list, the list is walked from the end
+        for (int i = spectators.size() - 1; i >= 0; i = Math.min(i, spectators.size()) - 1)
+            spectators.get(i).close(null);
+        return true;
+    }
+
+    /**
+     * This method handles a line a player sent, like the original server it is sent to everyone in the game,
+     * the sender included, so the handshake of ChessClient works the same way
+     * @param sender the connection of the player
+     * @param line the line
+     * */
+    public void received(Connection sender, String line) {
+        // spectators only watch
+        if (slotOf(sender) == -1)
+            return;
+        long start = System.nanoTime();
+        lines++;
+        int move = -1;
+        if (line.equals("START")) {
+            // a game starts once, and only when both colors are claimed by different players
+            if (state != State.WAITING || white == -1 || black == -1 || white == black)
+                return;
+            state = State.PLAYING;
+        } else if (line.equals("END")) {
+            state = State.FINISHED;
+        } else if (line.startsWith("HELLO ")) {
+            // telling the client that binary frames are relayed, and the id they carry
+            if (line.endsWith(" BINARY"))
+                sender.send("BINARY " + id);
+        } else if (line.startsWith("WHITE") || line.startsWith("BLACK")) {
+            // a color that is taken, or a second color for the same player, is not relayed
+            if (!claim(sender, line.startsWith("WHITE")))
+                return;
+        } else if (!line.equals("NEXT")) {
+            // only the lines of the protocol are relayed, anything else could be a secret like a resume token
+            move = Protocol.parseMove(line);
+            if (move == -1)
+                return;
+            int reason = check(sender, move, moves + 1);
+            if (reason != 0) {
+                sender.send("ERROR " + Protocol.reasonName(reason) + " " + line);
+                return;
+            }
+        }
+
+        // the line is encoded once, every player gets a view of the same bytes
+        ByteBuffer frame = Connection.encode(line);
+        broadcast(frame);
+        // the spectators only get the moves and the end of the game, as frames whatever format the players use
+        if (move != -1) {
+            spectate(Protocol.encodeMove(id, moves, move));
+            MoveMetrics.record(MoveMetrics.Stage.RELAY, start);
+        } else if (line.equals("END")) {
+            spectate(frame);
+        }
+    }
+
+    /**
+     * This method handles a binary frame a player sent, a move is relayed as it is
+     * @param sender the connection of the player
+     * @param frame the frame, it is only valid during the call
+     * */
+    public void received(Connection sender, ByteBuffer frame) {
+        if (Protocol.type(frame) != Protocol.MOVE || frame.remaining() != Protocol.MOVE_SIZE
+                || Protocol.game(frame) != id || slotOf(sender) == -1)
+            return;
+        long start = System.nanoTime();
+        lines++;
+        int reason = check(sender, Protocol.move(frame), Protocol.sequence(frame));
+        if (reason != 0) {
+            sender.send(Protocol.encodeError(id, Protocol.sequence(frame), reason));
+            return;
+        }
+        // the frame is copied once out of the sender's read buffer
+        ByteBuffer copy = ByteBuffer.allocate(frame.remaining()).put(frame).flip();
+        broadcast(copy);
+        spectate(copy);
+        MoveMetrics.record(MoveMetrics.Stage.RELAY, start);
+    }
+
+    /**
+     * This method checks a move and makes it on the game's position if it is legal
+     * @param sender the connection of the player who sent it
+     * @param move the move as encoded by Move
+     * @param sequence the number the move should have in the game
+     * @return 0 if the move was made, otherwise the reason it was rejected
+     * */
+    private int check(Connection sender, int move, int sequence) {
+        if (state == State.FINISHED)
+            return Protocol.GAME_OVER;
+        if (sequence != moves + 1)
+            return Protocol.OUT_OF_SEQUENCE;
+        // nobody moves before the game has started or for a color nobody has claimed
+        int toMove = position.isWhiteToMove() ? white : black;
+        if (state != State.PLAYING || toMove == -1 || players[toMove] != sender)
+            return Protocol.NOT_YOUR_TURN;
+        if (!isLegal(position, move))
+            return Protocol.ILLEGAL;
+        position.makeMove(move);
+        if (moves == log.length)
+            log = Arrays.copyOf(log, moves * 2);
+        log[moves++] = (short) move;
+        return 0;
+    }
+
+    /**
+     * This method checks a move with the same rules as the board: the piece's own movement, castling rules
+     * and the own king, so every move that is relayed or imported could have been made on the board
+     * @param position the position, the move is made by the side to move
+     * @param move the move as encoded by Move
+     * @return true if the move is legal
+     * */
+    public static boolean isLegal(Position position, int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int piece = position.pieceAt(from);
+        if (piece == Position.EMPTY || Position.isWhite(piece) != position.isWhiteToMove())
+            return false;
+        // a pawn on the last rank has to become a knight, bishop, rook or queen, no other move has a promotion
+        int promotion = Move.promotion(move);
+        boolean lastRank = Position.typeOf(piece) == Position.PAWN && (to < 8 || to >= 56);
+        if (lastRank ? promotion < Position.KNIGHT || promotion > Position.QUEEN : promotion != Position.EMPTY)
+            return false;
+        return position.canMove(from, to) && position.isLegalMove(move);
+    }
+
+    private void broadcast(ByteBuffer frame) {
+        for (int i = 0; i < playerCount; i++) {
+            Connection player = players[i];
+            // a player that does not read what it gets is dropped instead of filling the relay's memory
+            if (player != null && !player.send(frame.duplicate()))
+                player.close(null);
+        }
+    }
+
+    // every spectator gets a view of the same bytes, a closed one removes itself so the list is walked from the end
+    private void spectate(ByteBuffer frame) {
+        for (int i = spectators.size() - 1; i >= 0; i = Math.min(i, spectators.size()) - 1) {
+            Connection spectator = spectators.get(i);
+            if (!spectator.send(frame.duplicate()))
+                spectator.close(null);
+        }
+    }
+
+    /**
+     * This method makes a record of the game for the PGN file
+     * */
+    public GameRecord toRecord() {
+        GameRecord record = new GameRecord();
+        record.setTag("Event", "Relay game " + id);
+        for (int i = 0; i < moves; i++)
+            record.addMove(log[i] & 0xFFFF);
+        boolean white = position.isWhiteToMove();
+        if (!position.hasLegalMove(white))
+            record.setResult(position.isInCheck(white) ? (white ? "0-1" : "1-0") : "1/2-1/2");
+        return record;
+    }
+
+    /**
+     * This method checks if another player can join the game
+     * */
+    public boolean isOpen() {
+        return state == State.WAITING && playerCount < players.length;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * This method gets the position of the game
+     * */
+    public Position getPosition() {
+        return position;
+    }
+
+    /**
+     * This method gets the number of moves made in the game
+     * */
+    public int getMoves() {
+        return moves;
+    }
+
+    /**
+     * This method gets the number of lines and frames the players have sent
+     * */
+    public int getLines() {
+        return lines;
+    }
+}
@@ -0,0 +1,362 @@
+// Emir Adar
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * This class is a binary archive of games that is read through memory mapping, so any game can be fetched and
+ * replayed without reading the others. The file is a header, the games one after the other and an index with the
+ * offset of every game at the end:
+ * <pre>
+ * header: magic "CHGA", version, number of games, 0, offset of the index (long)
+ * game:   number of moves (2 bytes), result (1 byte), flags (1 byte), length of the tags (2 bytes),
+ *         the tags as name 0 value 0 in UTF-8 padded to an even length, the moves as encoded by Move (2 bytes each)
+ * index:  the offset of every game (long)
+ * </pre>
+ * A game from another position than the starting position has it in its FEN tag and the flag FROM_FEN set.
+ * <p>
+ * Usage: java GameArchive games.pgn games.chga converts a PGN file, java GameArchive games.chga prints its size
+ * */
+public class GameArchive {
+
+    public static final int MAGIC = 0x43484741;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 24;
+    // the flag of a game that does not start from the starting position
+    public static final int FROM_FEN = 1;
+    // the results in the order of their codes in the file
+    private static final String[] RESULTS = {"*", "1-0", "0-1", "1/2-1/2"};
+    // a game is never longer than this, the moves and the tags both have a length of 2 bytes
+    private static final int MAX_GAME = 6 + 0xFFFF + 1 + 2 * 0xFFFF;
+    // the file is mapped in regions of this size, each is mapped with the longest game more, so that a game
+    // that starts in a region always ends in it too
+    private static final long REGION = 1L << 30;
+
+    // declaring variables
+    private final MappedByteBuffer[] regions;
+    private final int count;
+    private final long index;
+
+    private GameArchive(MappedByteBuffer[] regions, int count, long index) {
+        this.regions = regions;
+        this.count = count;
+        this.index = index;
+    }
+
+    /**
+     * This method opens an archive, the file is mapped and can be closed by others afterwards
+     * @param file the file
+     * @return the archive
+     * @throws IOException if the file cannot be read or is not an archive
+     * */
+    public static GameArchive open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE)
+                throw new IOException("Not a game archive: " + file);
+            MappedByteBuffer[] regions = new MappedByteBuffer[(int) ((size - 1) / REGION + 1)];
+            for (int i = 0; i < regions.length; i++) {
+                long start = i * REGION;
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(REGION + MAX_GAME, size - start));
+            }
+            ByteBuffer header = regions[0];
+            int count = header.getInt(8);
+            long index = header.getLong(16);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || count < 0
+                    || index < HEADER_SIZE || index + 8L * count != size)
+                throw new IOException("Not a game archive: " + file);
+            return new GameArchive(regions, count, index);
+        }
+    }
+
+    /**
+     * This method gets the number of games in the archive
+     * */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * This method gets the number of moves of a game, each player's move counts
+     * @param game the number of the game, starting at 0
+     * */
+    public int getMoveCount(int game) {
+        return getShort(offset(game)) & 0xFFFF;
+    }
+
+    /**
+     * This method gets the result of a game
+     * @param game the number of the game, starting at 0
+     * @return "1-0", "0-1", "1/2-1/2" or "*"
+     * */
+    public String getResult(int game) {
+        return RESULTS[getByte(offset(game) + 2) & 3];
+    }
+
+    /**
+     * This method gets a move of a game
+     * @param game the number of the game, starting at 0
+     * @param ply the index of the move, 0 is the first move
+     * @return the move as encoded by Move
+     * @throws IndexOutOfBoundsException if the game has no such move
+     * */
+    public int getMove(int game, int ply) {
+        long offset = offset(game);
+        if (ply < 0 || ply >= (getShort(offset) & 0xFFFF))
+            throw new IndexOutOfBoundsException("No move " + ply + " in game " + game);
+        return getShort(movesOffset(offset) + 2L * ply) & 0xFFFF;
+    }
+
+    /**
+     * This method reads a whole game with its tags
+     * @param game the number of the game, starting at 0
+     * @return the record of the game
+     * */
+    public GameRecord getGame(int game) {
+        long offset = offset(game);
+        ByteBuffer region = regions[(int) (offset / REGION)];
+        int at = (int) (offset % REGION);
+        GameRecord record = readTags(region, at);
+        int moves = region.getShort(at) & 0xFFFF;
+        int movesAt = at + 6 + (region.getShort(at + 4) & 0xFFFF);
+        for (int i = 0; i < moves; i++)
+            record.addMove(region.getShort(movesAt + 2 * i) & 0xFFFF);
+        return record;
+    }
+
+    // a record with the tags and the result of the game that starts at the index in the region
+    private GameRecord readTags(ByteBuffer region, int at) {
+        int tagLength = region.getShort(at + 4) & 0xFFFF;
+
+        // a name and a value each end with a 0
+        GameRecord record = new GameRecord();
+        byte[] tags = new byte[tagLength];
+        region.get(at + 6, tags);
+        int start = 0;
+        String name = null;
+        for (int i = 0; i < tagLength; i++) {
+            if (tags[i] != 0)
+                continue;
+            String text = new String(tags, start, i - start, StandardCharsets.UTF_8);
+            start = i + 1;
+            if (name == null) {
+                name = text;
+            } else {
+                record.setTag(name, text);
+                if (name.equals("FEN"))
+                    record.setStartFen(text);
+                name = null;
+            }
+        }
+        record.setResult(RESULTS[region.get(at + 2) & 3]);
+        return record;
+    }
+
+    /**
+     * This method replays the start of a game, the tags are only read for the start position
+     * @param game the number of the game, starting at 0
+     * @param plies the number of moves to make, at most the number of moves of the game
+     * @return the position after the moves
+     * */
+    public Position replay(int game, int plies) {
+        return replay(game, plies, new Position());
+    }
+
+    /**
+     * This method replays the start of a game on a position that is reused, nothing else is allocated
+     * for a game from the starting position
+     * @param game the number of the game, starting at 0
+     * @param plies the number of moves to make, at most the number of moves of the game
+     * @param into the position, it is overwritten
+     * @return the same position
+     * */
+    public Position replay(int game, int plies, Position into) {
+        long offset = offset(game);
+        // the tags are only read for a game with a start position of its own
+        String fen = (getByte(offset + 3) & FROM_FEN) == 0 ? Fen.STARTING_POSITION
+                : readTags(regions[(int) (offset / REGION)], (int) (offset % REGION)).getStartFen();
+        Fen.parse(fen, 0, fen.length(), into);
+        int moves = Math.min(plies, getShort(offset) & 0xFFFF);
+        long movesAt = movesOffset(offset);
+        for (int i = 0; i < moves; i++)
+            into.makeMove(getShort(movesAt + 2L * i) & 0xFFFF);
+        return into;
+    }
+
+    private long offset(int game) {
+        if (game < 0 || game >= count)
+            throw new IndexOutOfBoundsException("No game " + game);
+        return getLong(index + 8L * game);
+    }
+
+    // the tags are padded, so the moves are always at an even offset
+    private long movesOffset(long offset) {
+        int tagLength = getShort(offset + 4) & 0xFFFF;
+        return offset + 6 + tagLength;
+    }
+
+    private byte getByte(long offset) {
+        return regions[(int) (offset / REGION)].get((int) (offset % REGION));
+    }
+
+    private short getShort(long offset) {
+        return regions[(int) (offset / REGION)].getShort((int) (offset % REGION));
+    }
+
+    private long getLong(long offset) {
+        return regions[(int) (offset / REGION)].getLong((int) (offset % REGION));
+    }
+
+    /**
+     * This class writes an archive, the games are added one after the other and the index is written on close
+     * */
+    public static final class Writer implements Closeable {
+
+        // declaring variables
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(MAX_GAME + 1);
+        private final ByteBuffer tags = ByteBuffer.allocate(0xFFFF);
+        private long[] offsets = new long[1024];
+        private int count;
+        // the bytes written to the file so far, the header is the first bytes of the buffer
+        private long position;
+
+        /**
+         * This is the constructor for a writer of a new archive, a file that exists is replaced
+         * @param file the file
+         * @throws IOException if the file cannot be created
+         * */
+        public Writer(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            buffer.put(new byte[HEADER_SIZE]);
+        }
+
+        /**
+         * This method adds a game to the end of the archive, tags that do not fit in 64 KB are left out
+         * @param game the game
+         * @throws IOException if the file cannot be written
+         * @throws IllegalArgumentException if the game has more than 65535 moves
+         * */
+        public void add(GameRecord game) throws IOException {
+            int moves = game.getMoveCount();
+            if (moves > 0xFFFF)
+                throw new IllegalArgumentException("A game with " + moves + " moves is too long");
+
+            // the result has its own byte, the start position is always in the FEN tag, so room is kept for it
+            String fen = game.getStartFen();
+            boolean fromFen = !fen.equals(Fen.STARTING_POSITION);
+            int keep = fromFen ? fen.getBytes(StandardCharsets.UTF_8).length + 5 : 0;
+            tags.clear();
+            for (Map.Entry<String, String> tag : game.getTags().entrySet()) {
+                if (tag.getKey().equals("FEN"))
+                    continue;
+                if (!tag.getKey().equals("Result"))
+                    putTag(tag.getKey(), tag.getValue(), keep);
+            }
+            if (fromFen)
+                putTag("FEN", fen, 0);
+            if (tags.position() % 2 != 0)
+                tags.put((byte) 0);
+            tags.flip();
+
+            if (buffer.remaining() < 6 + tags.remaining() + 2 * moves)
+                flush();
+            if (count == offsets.length)
+                offsets = Arrays.copyOf(offsets, count * 2);
+            offsets[count++] = position + buffer.position();
+            buffer.putShort((short) moves);
+            buffer.put((byte) Math.max(0, Arrays.asList(RESULTS).indexOf(game.getResult())));
+            buffer.put((byte) (fromFen ? FROM_FEN : 0));
+            buffer.putShort((short) tags.remaining());
+            buffer.put(tags);
+            for (int i = 0; i < moves; i++)
+                buffer.putShort((short) game.getMove(i));
+        }
+
+        // a tag that does not fit with the bytes that are kept is left out
+        private void putTag(String name, String value, int keep) {
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+            // one byte is kept for the padding
+            if (tags.remaining() - keep < nameBytes.length + valueBytes.length + 3)
+                return;
+            tags.put(nameBytes).put((byte) 0).put(valueBytes).put((byte) 0);
+        }
+
+        /**
+         * This method gets the number of games added so far
+         * */
+        public int getCount() {
+            return count;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                position += channel.write(buffer);
+            buffer.clear();
+        }
+
+        /**
+         * This method writes the index and the header, the archive can only be read afterwards
+         * @throws IOException if the file cannot be written
+         * */
+        @Override
+        public void close() throws IOException {
+            try {
+                long index = position + buffer.position();
+                for (int i = 0; i < count; i++) {
+                    if (buffer.remaining() < 8)
+                        flush();
+                    buffer.putLong(offsets[i]);
+                }
+                flush();
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(0).putLong(index).flip();
+                while (header.hasRemaining())
+                    channel.write(header, header.position());
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * This method converts a PGN file to an archive, games with a move that is not legal are left out
+     * @param pgn the PGN file
+     * @param archive the archive, a file that exists is replaced
+     * @return the number of games in the archive
+     * @throws IOException if a file cannot be read or written
+     * */
+    public static int convert(Path pgn, Path archive) throws IOException {
+        try (PgnReader reader = PgnReader.open(pgn); Writer writer = new Writer(archive)) {
+            while (reader.hasNext())
+                writer.add(reader.next());
+            return writer.getCount();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 2) {
+            long start = System.nanoTime();
+            int games = convert(Path.of(args[0]), Path.of(args[1]));
+            System.out.printf("%d games converted in %.2f s%n", games, (System.nanoTime() - start) / 1e9);
+        } else if (args.length == 1) {
+            GameArchive archive = open(Path.of(args[0]));
+            long moves = 0;
+            for (int i = 0; i < archive.size(); i++)
+                moves += archive.getMoveCount(i);
+            System.out.println(archive.size() + " games, " + moves + " moves");
+        } else {
+            System.out.println("Usage: java GameArchive games.pgn games.chga, or java GameArchive games.chga");
+        }
+    }
+}
@@ -0,0 +1,130 @@
+// Emir Adar
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class is the record of one game: its tags, the position it started from and its moves.
+ * The moves are kept as encoded by Move in 16 bits each, so a long game takes little memory.
+ * */
+public class GameRecord {
+
+    // the seven tags every PGN game has, in the order they are written
+    public static final String[] SEVEN_TAGS = {"Event", "Site", "Date", "Round", "White", "Black", "Result"};
+
+    // declaring variables
+    private final Map<String, String> tags = new LinkedHashMap<>();
+    private String startFen = Fen.STARTING_POSITION;
+    private short[] moves = new short[64];
+    private int count;
+
+    /**
+     * This is the constructor for an empty record of a game from the starting position, the result is unknown
+     * */
+    public GameRecord() {
+        for (String tag : SEVEN_TAGS)
+            tags.put(tag, "?");
+        tags.put("Result", "*");
+    }
+
+    /**
+     * This method sets a tag
+     * @param name the name of the tag, for example White
+     * @param value the value
+     * */
+    public void setTag(String name, String value) {
+        tags.put(name, value);
+    }
+
+    /**
+     * This method gets a tag
+     * @param name the name of the tag
+     * @return the value, or null if the tag is not set
+     * */
+    public String getTag(String name) {
+        return tags.get(name);
+    }
+
+    /**
+     * This method gets all tags in the order they were set
+     * */
+    public Map<String, String> getTags() {
+        return tags;
+    }
+
+    /**
+     * This method sets the position the game started from
+     * @param fen the position in Forsyth-Edwards Notation
+     * */
+    public void setStartFen(String fen) {
+        this.startFen = fen;
+    }
+
+    public String getStartFen() {
+        return startFen;
+    }
+
+    /**
+     * This method adds a move to the end of the game
+     * @param move the move as encoded by Move
+     * */
+    public void addMove(int move) {
+        if (count == moves.length)
+            moves = Arrays.copyOf(moves, count * 2);
+        moves[count++] = (short) move;
+    }
+
+    /**
+     * This method removes the last move, for example a move that was taken back
+     * */
+    public void removeLastMove() {
+        if (count > 0)
+            count--;
+    }
+
+    /**
+     * This method gets a move
+     * @param index the index of the move, 0 is white's first move
+     * @return the move as encoded by Move
+     * */
+    public int getMove(int index) {
+        return moves[index] & 0xFFFF;
+    }
+
+    /**
+     * This method gets the number of moves, each player's move counts
+     * */
+    public int getMoveCount() {
+        return count;
+    }
+
+    /**
+     * This method sets the result, it is kept in the Result tag
+     * @param result "1-0", "0-1", "1/2-1/2" or "*"
+     * */
+    public void setResult(String result) {
+        tags.put("Result", result);
+    }
+
+    public String getResult() {
+        return tags.get("Result");
+    }
+
+    /**
+     * This method creates the position the game started from
+     * */
+    public Position startPosition() {
+        return Fen.parse(startFen);
+    }
+
+    /**
+     * This method makes all the moves of the game from its start
+     * @return the position at the end of the game
+     * */
+    public Position replay() {
+        Position position = startPosition();
+        for (int i = 0; i < count; i++)
+            position.makeMove(getMove(i));
+        return position;
+    }
+}
@@ -0,0 +1,258 @@
+// Emir Adar
+import javax.swing.*;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This class owns the state of a game a client plays: the headless position and the number of moves.
+ * Only one thread, the writer, changes it. The board and the network put their events in a lock-free queue
+ * and the writer makes them in the order they came, so neither of them waits for the other.
+ * The board is never changed by the writer, it gets a copy of the position on the Swing event thread,
+ * and several moves that arrive before the board got the first are shown with one update.
+ * A move of the opponent that is not legal on the position is not made, the listener is told instead.
+ * The moves are recorded, and the game is added to the PGN file on its own thread when it has ended.
+ * */
+public class GameState {
+
+    /**
+     * This interface is told about the moves the writer has made
+     * */
+    public interface Listener {
+        /**
+         * This method is called on the writer's thread after a move was made on the position
+         * @param move the move as encoded by Move
+         * @param number the number of the move in the game, starting at 1
+         * @param local true if the move was made on this board, false if it came from the opponent
+         * */
+        void moveApplied(int move, int number, boolean local);
+
+        /**
+         * This method is called on the writer's thread when a move of the opponent is not legal on the position,
+         * the move was not made
+         * @param move the move as encoded by Move
+         * @param number the number the move would have had in the game
+         * */
+        void moveRejected(int move, int number);
+    }
+
+    // an event of the queue: a move of one of the players, a whole position, a move taken back or the end of the game
+    private static final class Event {
+        final int move;
+        final boolean local;
+        final Position position;
+        final int moves;
+        final int[] missed;
+        final boolean end;
+        final boolean back;
+
+        Event(int move, boolean local, Position position, int moves, int[] missed, boolean end, boolean back) {
+            this.move = move;
+            this.local = local;
+            this.position = position;
+            this.moves = moves;
+            this.missed = missed;
+            this.end = end;
+            this.back = back;
+        }
+    }
+
+    // declaring variables
+    private final Board board;
+    private final Executor writer;
+    private final Listener listener;
+    private final Queue<Event> events = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    // the newest copy that the board has not got yet, null when the board is up to date
+    private final AtomicReference<Position> published = new AtomicReference<>();
+    // the file is written on its own thread, the network thread never waits for the disk
+    private final ExecutorService archive = PgnWriter.FILE.isEmpty() ? null
+            : Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "Game archive");
+                thread.setDaemon(true);
+                return thread;
+            });
+    // only the writer uses these
+    private Position position = Position.startingPosition();
+    private int moves;
+    // the moves made on the position since it was loaded, only they can be taken back
+    private int undoable;
+    private GameRecord record = new GameRecord();
+    private boolean recorded;
+
+    /**
+     * This is the constructor for this class
+     * @param board the board that shows the game
+     * @param writer runs the writer's work, always on the same thread, for example NetworkLoop::execute
+     * @param listener is told about the moves, on the writer's thread
+     * */
+    public GameState(Board board, Executor writer, Listener listener) {
+        this.board = board;
+        this.writer = writer;
+        this.listener = listener;
+        record.setTag("Event", "Network game");
+    }
+
+    /**
+     * This method adds a move made on this board, it can be called from any thread
+     * @param move the move as encoded by Move
+     * */
+    public void localMove(int move) {
+        post(new Event(move, true, null, 0, null, false, false));
+    }
+
+    /**
+     * This method adds a move of the opponent, it can be called from any thread
+     * @param move the move as encoded by Move
+     * */
+    public void remoteMove(int move) {
+        post(new Event(move, false, null, 0, null, false, false));
+    }
+
+    /**
+     * This method replaces the position, for example after the game was resumed, it can be called from any thread
+     * @param position the position, it must not be changed afterwards
+     * @param moves the number of moves made in the game
+     * @param missed the last moves that led to the position, or null if they are not known
+     * */
+    public void load(Position position, int moves, int[] missed) {
+        post(new Event(Move.NONE, false, position, moves, missed, false, false));
+    }
+
+    /**
+     * This method ends the game, it is added to the PGN file once, it can be called from any thread
+     * */
+    public void finish() {
+        post(new Event(Move.NONE, false, null, 0, null, true, false));
+    }
+
+    /**
+     * This method takes back the last move, for example a move the relay rejected, it can be called from any thread
+     * @param number the number of the move, nothing happens if it is not the last move any more
+     * */
+    public void takeBack(int number) {
+        post(new Event(Move.NONE, false, null, number, null, false, true));
+    }
+
+    private void post(Event event) {
+        events.add(event);
+        if (draining.compareAndSet(false, true))
+            writer.execute(this::drain);
+    }
+
+    // making all the events that are queued, the board is updated once afterwards
+    private void drain() {
+        while (true) {
+            // an event that fails must not leave the flag set, or no event would ever be made again
+            try {
+                Event event;
+                while ((event = events.poll()) != null)
+                    apply(event);
+                publish();
+            } finally {
+                draining.set(false);
+            }
+            // an event that was added after the last poll but before the flag was cleared is not left behind
+            if (events.isEmpty() || !draining.compareAndSet(false, true))
+                return;
+        }
+    }
+
+    private void apply(Event event) {
+        if (event.end) {
+            finishRecord();
+            return;
+        }
+        if (event.back) {
+            if (event.moves == moves && undoable > 0) {
+                position.unmakeMove();
+                record.removeLastMove();
+                moves--;
+                undoable--;
+            }
+            return;
+        }
+        if (event.position != null) {
+            // the record goes on if it only missed the moves that are known, otherwise it starts again from the position
+            if (event.missed != null && record.getMoveCount() + event.missed.length == event.moves) {
+                for (int move : event.missed)
+                    record.addMove(move);
+            } else if (record.getMoveCount() != event.moves) {
+                record = new GameRecord();
+                record.setTag("Event", "Network game");
+                record.setStartFen(Fen.toFen(event.position));
+            }
+            position = new Position(event.position);
+            moves = event.moves;
+            undoable = 0;
+            return;
+        }
+        // the opponent's move is checked like the relay checks it, a move that does not fit means the game is out of step
+        if (!event.local && !Game.isLegal(position, event.move)) {
+            if (listener != null)
+                listener.moveRejected(event.move, moves + 1);
+            return;
+        }
+        position.makeMove(event.move);
+        record.addMove(event.move);
+        moves++;
+        undoable++;
+        if (listener != null)
+            listener.moveApplied(event.move, moves, event.local);
+    }
+
+    private void finishRecord() {
+        // a game without moves is not worth recording
+        if (archive == null || recorded || record.getMoveCount() == 0)
+            return;
+        recorded = true;
+        boolean white = position.isWhiteToMove();
+        if (!position.hasLegalMove(white))
+            record.setResult(position.isInCheck(white) ? (white ? "0-1" : "1-0") : "1/2-1/2");
+        // the finished record belongs to the archive thread now, the writer goes on with a record of its own
+        GameRecord finished = record;
+        record = new GameRecord();
+        archive.execute(() -> PgnWriter.record(finished));
+    }
+
+    // the board gets its own copy, a copy that is still waiting is replaced instead of updating the board twice
+    private void publish() {
+        if (published.getAndSet(new Position(position)) == null)
+            SwingUtilities.invokeLater(this::show);
+    }
+
+    private void show() {
+        Position snapshot = published.getAndSet(null);
+        if (snapshot == null)
+            return;
+        long start = System.nanoTime();
+        board.loadPosition(snapshot);
+        board.setWhitesTurn(snapshot.isWhiteToMove());
+        MoveMetrics.record(MoveMetrics.Stage.APPLY, start);
+    }
+
+    /**
+     * This method gets the position, only the writer may use it
+     * */
+    public Position getPosition() {
+        return position;
+    }
+
+    /**
+     * This method gets the number of moves made in the game, only the writer may use it
+     * */
+    public int getMoves() {
+        return moves;
+    }
+
+    /**
+     * This method checks if it is white's turn, only the writer may use it
+     * */
+    public boolean isWhiteToMove() {
+        return position.isWhiteToMove();
+    }
+}
@@ -0,0 +1,66 @@
+// Emir Adar
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+
+/**
+ * This class shows a recorded game on the board, for example a game of an archive. The left and right arrow keys
+ * go one move back and forward, home and end go to the start and the end of the game.
+ * The board only shows the game, no piece can be picked up.
+ * */
+public class GameViewer {
+
+    // declaring variables
+    private final Board board;
+    private final GameRecord game;
+    private final String title;
+    // the position after ply moves, the board gets a copy of it
+    private final Position position;
+    private int ply;
+
+    /**
+     * This is the constructor for this class, the board is shown on the Swing event thread
+     * @param board the board that shows the game
+     * @param game the game
+     * @param ply the number of moves to show the position after, at most the number of moves of the game
+     * */
+    public GameViewer(Board board, GameRecord game, int ply) {
+        this.board = board;
+        this.game = game;
+        this.title = game.getTag("White") + " - " + game.getTag("Black") + " " + game.getResult();
+        this.position = game.startPosition();
+        // it is never the viewer's turn, so the board does not let it move
+        board.setWhitePlayer(true);
+        board.setWhitesTurn(false);
+        SwingUtilities.invokeLater(() -> {
+            bind("LEFT", -1);
+            bind("RIGHT", 1);
+            bind("HOME", -game.getMoveCount());
+            bind("END", game.getMoveCount());
+            board.startGame();
+            go(Math.min(Math.max(ply, 0), game.getMoveCount()));
+        });
+    }
+
+    private void bind(String key, int plies) {
+        JRootPane root = board.getRootPane();
+        root.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(key), key);
+        root.getActionMap().put(key, new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                go(Math.min(Math.max(ply + plies, 0), game.getMoveCount()));
+            }
+        });
+    }
+
+    // making or taking back moves until the position is the one after the given number of moves
+    private void go(int target) {
+        while (ply < target)
+            position.makeMove(game.getMove(ply++));
+        while (ply > target) {
+            position.unmakeMove();
+            ply--;
+        }
+        board.loadPosition(new Position(position));
+        board.setTitle(title + ", move " + ply + " of " + game.getMoveCount());
+    }
+}
@@ -5,106 +5,54 @@
  * */
 public class King extends Piece {
 
-    private Square position;
-
     public King(boolean white, Square position) {
-        super(white, white ? "resources/Pictures/King_white.png":"resources/Pictures/King_black.png");
-        this.position = position;
+        super(white);
+        super.setPosition(position);
     }
 
     @Override
-    public boolean canMove(Board board, Square start, Square end) {
-
-        // checking if the end square is occupied by a piece of the same color and it's not a Rook
-        if (end.getPiece() != null && end.getPiece().isWhite() == this.isWhite() && !(end.getPiece() instanceof Rook)) {
-            return false;
-        }
-
-        int y = Math.abs(start.getRow() - end.getRow());
-        int x = Math.abs(start.getCol() - end.getCol());
-
-        // Check for a normal move
-        if ((x == 1 || y == 1) && !this.isCastlingMove(board, start, end)) {
-            return true;
-        }
-
-        return this.isCastlingMove(board, start, end);
+    public int getType() {
+        return Position.KING;
     }
 
-
     @Override
-    public Square getPosition() {
-        return position;
-    }
-
-    private boolean pathIsClear(Board board, Square start, Square end) {
-        int startCol = start.getCol();
-        int endCol = end.getCol();
-        int row = start.getRow();
-
-        int step = startCol < endCol ? 1 : -1;
-
-        for (int col = startCol + step; col != endCol; col += step) {
-            Square square = board.getSquare(row, col);
-            if (square.getPiece() != null)
-                return false;
-        }
-        return true;
+    public boolean canMove(Board board, Square start, Square end) {
+        // a king dropped on its own rook is a castling move
+        if (isCastlingMove(board, start, end))
+            return true;
+        return super.canMove(board, start, end);
     }
 
-    private boolean kingIsInCheck(Board board) {
-        return this.isAttacked(board);
+    /**
+     * This method gets the square the king ends up on when castling towards the given square
+     * @param board the board
+     * @param start the square of the king
+     * @param end the square of the rook or the square the king moves to
+     * @return the square the king moves to
+     * */
+    public Square getCastlingSquare(Board board, Square start, Square end) {
+        int direction = end.getCol() > start.getCol() ? 1 : -1;
+        return board.getSquare(start.getRow(), start.getCol() + 2*direction);
     }
 
     /**
      * This method checks if the move is valid a castling move
      * @param board the board
      * @param start the start square
-     * @param end the end square
+     * @param end the end square, either the rook or the square the king moves to
      * @return true if it is a valid castling move
      * */
     public boolean isCastlingMove(Board board, Square start, Square end) {
-        // checking if the piece at the end square is a rook of the same color
-        if (end.getPiece() instanceof Rook && end.getPiece().isWhite() == this.isWhite()) {
-            // checking if the king and the rook have not moved yet
-            if (this.isFirstMove() && end.getPiece().isFirstMove()) {
-                // checking if the path between the king and the rook is clear and the king is not in check after the move
-                if (pathIsClear(board, start, end) && !isInCheckAfterCastling(board, start, end)) {
-                    // The path is clear and the king is not in check, so this is a valid castling move
-                    return true;
-                }
-            }
-        }
-        return false;
-    }
-
-    private boolean isInCheckAfterCastling(Board board, Square start, Square end) {
-        // saving the original positions
-        Piece originalKing = start.getPiece();
-        Piece originalRook = end.getPiece();
-
-        // determining the direction of the castling move
-        int direction = end.getCol() > start.getCol() ? 1 : -1;
-
-        // simulating the castling move
-        start.setPiece(null);
-        Square kingEnd = board.getSquare(start.getRow(), start.getCol() + 2*direction);
-        Square rookEnd = board.getSquare(start.getRow(), start.getCol() + direction);
-
-        kingEnd.setPiece(originalKing);
-        rookEnd.setPiece(originalRook);
-        originalKing.setPosition(kingEnd);
-        originalRook.setPosition(rookEnd);
+        if (start.getRow() != end.getRow() || Math.abs(start.getCol() - end.getCol()) < 2)
+            return false;
 
-        // checking if the king is in check
-        boolean isInCheck = kingIsInCheck(board);
-        // undoing the move
-        start.setPiece(originalKing);
-        kingEnd.setPiece(null);
-        rookEnd.setPiece(null);
-        originalRook.setPosition(rookEnd);
+        // the king may be dropped on its own rook, the position expects the square the king moves to
+        if (end.getPiece() == null ? Math.abs(start.getCol() - end.getCol()) != 2
+                : !(end.getPiece() instanceof Rook && end.getPiece().isWhite() == this.isWhite()))
+            return false;
 
-        return isInCheck;
+        Square kingEnd = getCastlingSquare(board, start, end);
+        return board.getPosition().canMove(start.getIndex(), kingEnd.getIndex());
     }
 
     /**
@@ -113,26 +61,7 @@ public class King extends Piece {
      * @return true if it's checkmate
      * */
     public boolean isCheckmate(Board board) {
-        if (kingIsInCheck(board)) {
-            for (int i = 0; i < 8; i++) {
-                for (int j = 0; j < 8; j++) {
-                    Square square = board.getSquare(i, j);
-                    Piece piece = square.getPiece();
-                    if (piece != null && piece.isWhite() == this.isWhite()) {
-                        for (int k = 0; k < 8; k++) {
-                            for (int l = 0; l < 8; l++) {
-                                Square endSquare = board.getSquare(k, l);
-                                if (piece.canMove(board, square, endSquare) && !kingIsInCheckAfterMove(board, square, endSquare)) {
-                                    return false;
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-            return true;
-        }
-        return false;
+        return board.getPosition().isCheckmate(isWhite());
     }
 
 
@@ -146,26 +75,13 @@ public class King extends Piece {
         // Determine the direction of the castling move
         int direction = end.getCol() > start.getCol() ? 1 : -1;
 
-        Square kingEnd = board.getSquare(start.getRow(), start.getCol() + 2*direction);
-        Square rookStart = board.getSquare(7, end.getCol());
-        Square rookEnd = board.getSquare(7, kingEnd.getCol() - direction);
-
-        if (rookStart != null && rookEnd != null && rookStart.getPiece() instanceof Rook && rookStart.getPiece().isFirstMove()) {
-
-            // moving the rook to its new position
-            rookEnd.setPiece(rookStart.getPiece());
-            rookStart.setPiece(null);
-            rookEnd.getPiece().setPosition(rookEnd);
-
-            // moving the king to its new position
-            kingEnd.setPiece(this);
-            start.setPiece(null);
-            this.setPosition(kingEnd);
+        Square kingEnd = getCastlingSquare(board, start, end);
+        Square rookStart = board.getSquare(start.getRow(), direction > 0 ? 7 : 0);
+        Square rookEnd = board.getSquare(start.getRow(), kingEnd.getCol() - direction);
 
-            // updating the firstMove attribute of the king and the rook
-            this.setFirstMove(false);
-            rookEnd.getPiece().setFirstMove(false);
+        // the position moves the rook together with the king
+        board.applyMove(start, kingEnd, null);
+        if (board.getMoveListener() != null)
             board.getMoveListener().moveMade(start, kingEnd, rookStart, rookEnd, null);
-        }
     }
 }
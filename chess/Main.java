@@ -1,6 +1,26 @@
 //Emir Adar
 public class Main {
-    public static void main(String[] args) {
-        new ChessClient(new Board());
+    public static void main(String[] args) throws Exception {
+        // "--computer [milliseconds] [black] [fen]" plays against the engine instead of another player, from any position
+        // "--relay [port]" runs the relay server instead of a client
+        // "--watch game" watches a game on the relay
+        // "--archive file game [ply]" shows a game of an archive made by GameArchive
+        if (args.length > 0 && args[0].equals("--relay")) {
+            RelayServer.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+        } else if (args.length > 1 && args[0].equals("--watch")) {
+            new Spectator(new Board(), Integer.parseInt(args[1]));
+        } else if (args.length > 2 && args[0].equals("--archive")) {
+            GameRecord game = GameArchive.open(java.nio.file.Path.of(args[1])).getGame(Integer.parseInt(args[2]));
+            new GameViewer(new Board(), game, args.length > 3 ? Integer.parseInt(args[3]) : game.getMoveCount());
+        } else if (args.length > 0 && args[0].equals("--computer")) {
+            long millis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+            boolean whitePlayer = !(args.length > 2 && args[2].equals("black"));
+            StringBuilder fen = new StringBuilder();
+            for (int i = 3; i < args.length; i++)
+                fen.append(args[i]).append(' ');
+            new ComputerPlayer(new Board(fen.length() > 0 ? fen.toString() : Fen.STARTING_POSITION), whitePlayer, millis);
+        } else {
+            new ChessClient(new Board());
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,75 @@
+// Emir Adar
+
+/**
+ * This class encodes a move in 16 bits: the start square in bits 0-5, the end square in bits 6-11
+ * and the piece type of a promotion in bits 12-14. Castling is encoded as the king moving two squares.
+ * */
+public final class Move {
+
+    // no valid move is encoded as 0 since a1a1 is not a move
+    public static final int NONE = 0;
+
+    private Move() {}
+
+    /**
+     * This method encodes a move without a promotion
+     * @param from the start square
+     * @param to the end square
+     * @return the encoded move
+     * */
+    public static int of(int from, int to) {
+        return from | to << 6;
+    }
+
+    /**
+     * This method encodes a move
+     * @param from the start square
+     * @param to the end square
+     * @param promotion the piece type a pawn is promoted to or Position.EMPTY
+     * @return the encoded move
+     * */
+    public static int of(int from, int to, int promotion) {
+        return promotion <= Position.PAWN ? of(from, to) : from | to << 6 | promotion << 12;
+    }
+
+    /**
+     * This method gets the start square of a move
+     * */
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    /**
+     * This method gets the end square of a move
+     * */
+    public static int to(int move) {
+        return move >>> 6 & 63;
+    }
+
+    /**
+     * This method gets the piece type a pawn is promoted to
+     * @return the piece type or Position.EMPTY if the move is not a promotion
+     * */
+    public static int promotion(int move) {
+        int promotion = move >>> 12 & 7;
+        return promotion == 0 ? Position.EMPTY : promotion;
+    }
+
+    /**
+     * This method converts a move to coordinate notation, for example e2e4 or e7e8q
+     * @param move the encoded move
+     * */
+    public static String toString(int move) {
+        String text = squareName(from(move)) + squareName(to(move));
+        int promotion = promotion(move);
+        return promotion == Position.EMPTY ? text : text + "pnbrqk".charAt(promotion);
+    }
+
+    /**
+     * This method converts a square index to its name, for example 0 = a1
+     * @param square the square index
+     * */
+    public static String squareName(int square) {
+        return "" + (char) ('a' + Position.file(square)) + (char) ('1' + Position.rank(square));
+    }
+}
@@ -0,0 +1,110 @@
+// Emir Adar
+import javax.swing.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class works out where the pieces of the side to move can go, so that the board can highlight
+ * the squares while a piece is dragged. The legal moves are generated on a background thread from a copy
+ * of the position, and the result is kept until the position changes. A calculation for a position that
+ * is no longer shown is cancelled.
+ * */
+public class MoveHints {
+
+    // declaring variables
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Move hints");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Result result;
+    private Future<?> pending;
+    private long pendingKey;
+    private Runnable onReady;
+
+    /**
+     * This inner class holds the destinations of every square for one position
+     * */
+    private static final class Result {
+        private final long key;
+        private final long[] targets;
+
+        private Result(long key, long[] targets) {
+            this.key = key;
+            this.targets = targets;
+        }
+    }
+
+    /**
+     * This method gets the squares a piece can legally move to, if they have been calculated
+     * @param position the position that is shown
+     * @param from the square of the piece
+     * @return a bitboard of the destinations, or 0 if they are not known for this position
+     * */
+    public long getTargets(Position position, int from) {
+        Result current = result;
+        return current != null && current.key == position.getKey() ? current.targets[from] : 0L;
+    }
+
+    /**
+     * This method starts calculating the legal moves of a position unless they are known or being calculated,
+     * a calculation for another position is cancelled. It must be called on the Swing event thread.
+     * @param position the position, it is copied so it may change while the calculation runs
+     * @param onReady runs on the Swing event thread when the moves are known, may be null
+     * */
+    public void request(Position position, Runnable onReady) {
+        long key = position.getKey();
+        this.onReady = onReady;
+        Result current = result;
+        if (current != null && current.key == key) {
+            cancel();
+            pendingKey = key;
+            ready(key);
+            return;
+        }
+        // the same position is already being calculated, the callback runs when it is done
+        if (pending != null && !pending.isDone() && pendingKey == key)
+            return;
+        cancel();
+
+        Position snapshot = new Position(position);
+        pendingKey = key;
+        pending = executor.submit(() -> {
+            long[] targets = calculate(snapshot);
+            if (Thread.currentThread().isInterrupted())
+                return;
+            result = new Result(key, targets);
+            SwingUtilities.invokeLater(() -> ready(key));
+        });
+    }
+
+    /**
+     * This method cancels a calculation that is still running
+     * */
+    public void cancel() {
+        if (pending != null)
+            pending.cancel(true);
+        pending = null;
+    }
+
+    // running the callback once, and only if the result is for the position it was requested for
+    private void ready(long key) {
+        Result current = result;
+        Runnable callback = onReady;
+        if (callback != null && current != null && current.key == key && pendingKey == key) {
+            onReady = null;
+            callback.run();
+        }
+    }
+
+    // one move generation gives the destinations of all the pieces, so picking up another piece is free
+    private static long[] calculate(Position position) {
+        int[] moves = new int[256];
+        int count = position.generateLegalMoves(moves);
+        long[] targets = new long[64];
+        for (int i = 0; i < count; i++)
+            targets[Move.from(moves[i])] |= 1L << Move.to(moves[i]);
+        return targets;
+    }
+}
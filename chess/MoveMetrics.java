@@ -0,0 +1,209 @@
+// Emir Adar
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class measures the time a move spends in each stage between the drag release and the opponent's board.
+ * Every measurement goes into a histogram of its stage and, when a flight recording is running, into a
+ * chess.MoveStage event, so "jcmd pid JFR.start" shows the stages next to the garbage collector and the threads.
+ * The histograms have eight buckets per power of two, so a percentile is at most an eighth too high.
+ * Recording takes no locks and can be done from any thread.
+ * */
+public final class MoveMetrics {
+
+    /**
+     * This enum holds the stages of a move
+     * */
+    public enum Stage {
+        // the board checks the move of the dragged piece
+        CHECK,
+        // the client encodes the move and queues it
+        SEND,
+        // from sending the move until it came back from the server, the relay's part included
+        WIRE,
+        // the relay checks the move and queues it for the players
+        RELAY,
+        // the client reads the opponent's move
+        PARSE,
+        // the move is made on the board and the squares are updated
+        APPLY,
+        // the board view paints the squares that changed
+        PAINT
+    }
+
+    /**
+     * This class is the flight recorder event of one measured stage
+     * */
+    @Name("chess.MoveStage")
+    @Label("Move Stage")
+    @Category("Chess")
+    @Description("The time a move spent in one stage between the players")
+    static class StageEvent extends Event {
+        @Label("Stage")
+        String stage;
+
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long nanos;
+    }
+
+    // values below 8 have a bucket each, above that there are 8 buckets for every power of two
+    private static final int BUCKETS = 8 * 62;
+    private static final AtomicLongArray[] HISTOGRAMS = new AtomicLongArray[Stage.values().length];
+    private static final AtomicLongArray MAX = new AtomicLongArray(Stage.values().length);
+    // an event is only allocated while a recording takes it
+    private static final EventType STAGE_EVENT = EventType.getEventType(StageEvent.class);
+
+    static {
+        for (int i = 0; i < HISTOGRAMS.length; i++)
+            HISTOGRAMS[i] = new AtomicLongArray(BUCKETS);
+    }
+
+    private MoveMetrics() {}
+
+    /**
+     * This method records the time of a stage that started at the given time
+     * @param stage the stage
+     * @param start the System.nanoTime() at the start of the stage
+     * */
+    public static void record(Stage stage, long start) {
+        recordNanos(stage, System.nanoTime() - start);
+    }
+
+    /**
+     * This method records the time of a stage
+     * @param stage the stage
+     * @param nanos the time in nanoseconds
+     * */
+    public static void recordNanos(Stage stage, long nanos) {
+        if (nanos < 0)
+            return;
+        HISTOGRAMS[stage.ordinal()].incrementAndGet(bucket(nanos));
+        MAX.accumulateAndGet(stage.ordinal(), nanos, Math::max);
+
+        if (!STAGE_EVENT.isEnabled())
+            return;
+        StageEvent event = new StageEvent();
+        if (event.shouldCommit()) {
+            event.stage = stage.name();
+            event.nanos = nanos;
+            event.commit();
+        }
+    }
+
+    private static int bucket(long nanos) {
+        if (nanos < 8)
+            return (int) nanos;
+        int high = 63 - Long.numberOfLeadingZeros(nanos);
+        return (high - 2) * 8 + (int) (nanos >>> (high - 3) & 7);
+    }
+
+    // the largest value that falls into a bucket
+    private static long upperBound(int bucket) {
+        if (bucket < 8)
+            return bucket;
+        int shift = bucket / 8 - 1;
+        return ((8L + bucket % 8 + 1) << shift) - 1;
+    }
+
+    /**
+     * This method takes a snapshot of all the histograms, the recording goes on meanwhile
+     * @return the snapshot
+     * */
+    public static Snapshot snapshot() {
+        Stage[] stages = Stage.values();
+        long[][] counts = new long[stages.length][BUCKETS];
+        long[] max = new long[stages.length];
+        for (int i = 0; i < stages.length; i++) {
+            for (int bucket = 0; bucket < BUCKETS; bucket++)
+                counts[i][bucket] = HISTOGRAMS[i].get(bucket);
+            max[i] = MAX.get(i);
+        }
+        return new Snapshot(counts, max);
+    }
+
+    /**
+     * This method clears all the histograms, for example after a warm up
+     * */
+    public static void reset() {
+        for (int i = 0; i < HISTOGRAMS.length; i++) {
+            for (int bucket = 0; bucket < BUCKETS; bucket++)
+                HISTOGRAMS[i].set(bucket, 0);
+            MAX.set(i, 0);
+        }
+    }
+
+    /**
+     * This class holds the histograms as they were when the snapshot was taken
+     * */
+    public static final class Snapshot {
+
+        private final long[][] counts;
+        private final long[] max;
+
+        private Snapshot(long[][] counts, long[] max) {
+            this.counts = counts;
+            this.max = max;
+        }
+
+        /**
+         * This method gets the number of measurements of a stage
+         * */
+        public long count(Stage stage) {
+            long total = 0;
+            for (long count : counts[stage.ordinal()])
+                total += count;
+            return total;
+        }
+
+        /**
+         * This method gets a percentile of a stage
+         * @param stage the stage
+         * @param percentile the percentile, for example 99
+         * @return the time in nanoseconds, 0 if the stage has no measurements
+         * */
+        public long percentile(Stage stage, double percentile) {
+            long total = count(stage);
+            if (total == 0)
+                return 0;
+            long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+            long seen = 0;
+            long[] histogram = counts[stage.ordinal()];
+            for (int bucket = 0; bucket < histogram.length; bucket++) {
+                seen += histogram[bucket];
+                if (seen >= rank)
+                    return Math.min(upperBound(bucket), max[stage.ordinal()]);
+            }
+            return max[stage.ordinal()];
+        }
+
+        /**
+         * This method gets the longest time of a stage in nanoseconds
+         * */
+        public long max(Stage stage) {
+            return max[stage.ordinal()];
+        }
+
+        /**
+         * This method makes a table of the stages that have measurements, the times are in microseconds
+         * */
+        @Override
+        public String toString() {
+            StringBuilder table = new StringBuilder(String.format("%-6s %8s %10s %10s %10s%n", "stage", "count", "p50 us", "p99 us", "max us"));
+            for (Stage stage : Stage.values()) {
+                long count = count(stage);
+                if (count > 0)
+                    table.append(String.format("%-6s %8d %10.1f %10.1f %10.1f%n", stage, count,
+                            percentile(stage, 50) / 1000.0, percentile(stage, 99) / 1000.0, max(stage) / 1000.0));
+            }
+            return table.toString();
+        }
+    }
+}
@@ -0,0 +1,238 @@
+// Emir Adar
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * This class runs one selector on its own thread and drives every connection registered with it,
+ * so a single thread serves any number of sockets without blocking on any of them.
+ * Other threads hand work to the loop with execute, delayed work is scheduled with schedule.
+ * */
+public class NetworkLoop {
+
+    // declaring variables
+    private final Selector selector;
+    private final Thread thread;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final PriorityQueue<Timer> timers = new PriorityQueue<>();
+    private volatile boolean running = true;
+    private long timerCount;
+
+    /**
+     * This inner class is a task that runs at a given time on the loop
+     * */
+    private static final class Timer implements Comparable<Timer> {
+        private final long due;
+        private final long order;
+        private final Runnable task;
+
+        private Timer(long due, long order, Runnable task) {
+            this.due = due;
+            this.order = order;
+            this.task = task;
+        }
+
+        @Override
+        public int compareTo(Timer other) {
+            return due != other.due ? Long.compare(due, other.due) : Long.compare(order, other.order);
+        }
+    }
+
+    /**
+     * This is the constructor for this class, the loop starts right away
+     * @param name the name of the loop's thread
+     * */
+    public NetworkLoop(String name) {
+        try {
+            this.selector = Selector.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * This method starts connecting to a server, the handler is told when the connection is open or has failed
+     * @param host the host name of the server
+     * @param port the port of the server
+     * @param handler receives the events of the connection on the loop's thread
+     * @return the connection, messages sent before it is open are sent once it is
+     * */
+    public Connection connect(String host, int port, Connection.Handler handler) {
+        Connection connection = new Connection(this, handler);
+        execute(() -> {
+            try {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                boolean connected = channel.connect(new InetSocketAddress(host, port));
+                connection.register(channel, selector, connected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT);
+                if (connected)
+                    connection.opened();
+            } catch (IOException e) {
+                connection.close(e);
+            }
+        });
+        return connection;
+    }
+
+    /**
+     * This method starts accepting connections on a port
+     * @param port the port, 0 picks a free one
+     * @param handler receives the events of every accepted connection on the loop's thread
+     * @return the port that is listened on
+     * @throws IOException if the port cannot be used
+     * */
+    public int listen(int port, Connection.Handler handler) throws IOException {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.configureBlocking(false);
+        server.bind(new InetSocketAddress(port), 1024);
+        execute(() -> {
+            try {
+                server.register(selector, SelectionKey.OP_ACCEPT, new Acceptor(server, handler));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        return ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    /**
+     * This inner class accepts the connections of a listening socket
+     * */
+    private final class Acceptor {
+        private final ServerSocketChannel server;
+        private final Connection.Handler handler;
+
+        private Acceptor(ServerSocketChannel server, Connection.Handler handler) {
+            this.server = server;
+            this.handler = handler;
+        }
+
+        private void accept() throws IOException {
+            SocketChannel channel;
+            while ((channel = server.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                Connection connection = new Connection(NetworkLoop.this, handler);
+                connection.register(channel, selector, SelectionKey.OP_READ);
+                connection.opened();
+            }
+        }
+    }
+
+    /**
+     * This method runs a task on the loop's thread
+     * @param task the task
+     * */
+    public void execute(Runnable task) {
+        if (inLoop()) {
+            task.run();
+        } else {
+            tasks.add(task);
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * This method runs a task on the loop's thread after a delay
+     * @param millis the delay in milliseconds
+     * @param task the task
+     * */
+    public void schedule(long millis, Runnable task) {
+        long due = System.nanoTime() + millis * 1_000_000L;
+        execute(() -> timers.add(new Timer(due, timerCount++, task)));
+    }
+
+    /**
+     * This method checks if the calling thread is the loop's thread
+     * */
+    public boolean inLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * This method stops the loop and closes every connection registered with it
+     * */
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                Runnable task;
+                while ((task = tasks.poll()) != null)
+                    task.run();
+
+                // sleeping until a socket is ready, a task arrives or the next timer is due
+                long timeout = 0;
+                long now = System.nanoTime();
+                while (!timers.isEmpty() && timers.peek().due <= now)
+                    timers.poll().task.run();
+                if (!timers.isEmpty())
+                    timeout = Math.max(1, (timers.peek().due - now) / 1_000_000L);
+                if (!tasks.isEmpty())
+                    continue;
+                selector.select(timeout);
+
+                for (SelectionKey key : selector.selectedKeys()) {
+                    try {
+                        ready(key);
+                    } catch (IOException | RuntimeException e) {
+                        // one failing connection must not stop the loop for all the others
+                        e.printStackTrace();
+                    }
+                }
+                selector.selectedKeys().clear();
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        for (SelectionKey key : new ArrayList<>(selector.keys())) {
+            if (key.attachment() instanceof Connection) {
+                ((Connection) key.attachment()).close(null);
+            } else {
+                try {
+                    key.channel().close();
+                } catch (IOException e) {
+                    // the loop is gone anyway
+                }
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // the loop is gone anyway
+        }
+    }
+
+    private void ready(SelectionKey key) throws IOException {
+        if (!key.isValid())
+            return;
+        Object attachment = key.attachment();
+        if (attachment instanceof Connection) {
+            Connection connection = (Connection) attachment;
+            if (key.isConnectable())
+                connection.finishConnect();
+            if (key.isValid() && key.isReadable())
+                connection.read();
+            if (key.isValid() && key.isWritable())
+                connection.flush();
+        } else if (attachment instanceof Acceptor) {
+            ((Acceptor) attachment).accept();
+        }
+    }
+}
@@ -5,42 +5,13 @@ import javax.swing.*;
 public class Pawn extends Piece {
 
     public Pawn(boolean white, Square position) {
-        super(white, white ? "resources/Pictures/Pawn_white.png":"resources/Pictures/Pawn_black.png");
+        super(white);
         super.setPosition(position);
     }
 
     @Override
-    public boolean canMove(Board board, Square start, Square end) {
-
-        // checking if the end square is occupied by a piece of the same color
-        if ((end.getPiece() != null && end.getPiece().isWhite() == this.isWhite()))
-            return false;
-
-        int y = Math.abs(start.getRow() - end.getRow());
-        int x = Math.abs(start.getCol() - end.getCol());
-
-        // checking for a normal move
-        if (((y == 2 && x == 0 && isFirstMove()) || (x == 0 && y == 1)) && end.getPiece() == null) {
-            this.setFirstMove(false);
-            return true;
-        }
-
-        // checking for a capture move
-        if (x == 1 && y == 1 && end.getPiece() != null) {
-            this.setFirstMove(false);
-            return true;
-        }
-
-        // checking for en passant
-        if (x == 1 && y == 1 && end.getPiece() == null) {
-            Square left = board.getSquare(start.getRow(), start.getCol() - 1);
-            Square right = board.getSquare(start.getRow(), start.getCol() + 1);
-            if ((isValidEnPassantSquare(left) || isValidEnPassantSquare(right))) {
-                return true;
-            }
-        }
-
-        return false;
+    public int getType() {
+        return Position.PAWN;
     }
 
     /**
@@ -69,12 +40,4 @@ public class Pawn extends Piece {
         }
         return null;
     }
-
-    /**
-     * This method checks if the move made is an en passant move
-     * @param square the square where the enemy is
-     * */
-    private boolean isValidEnPassantSquare(Square square) {
-        return square != null && square.getPiece() instanceof Pawn && square.getPiece().isWhite() != this.isWhite() && square.getPiece().isFirstMove();
-    }
 }
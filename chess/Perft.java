@@ -0,0 +1,120 @@
+// Emir Adar
+
+/**
+ * This class counts the leaf nodes of the move tree (perft) to verify the move generation.
+ * Usage: java Perft [--divide] depth [FEN], or java Perft --verify to check all known positions.
+ * */
+public class Perft {
+
+    // positions with known node counts, the counts start at depth 1
+    private static final String[] FENS = {
+            Fen.STARTING_POSITION,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8"
+    };
+    private static final long[][] COUNTS = {
+            {20, 400, 8902, 197281, 4865609},
+            {48, 2039, 97862, 4085603},
+            {14, 191, 2812, 43238, 674624},
+            {6, 264, 9467, 422333},
+            {44, 1486, 62379, 2103487}
+    };
+
+    // one move buffer per ply so that counting allocates nothing
+    private final int[][] buffers = new int[64][256];
+    private final Position position;
+
+    public Perft(Position position) {
+        this.position = position;
+    }
+
+    /**
+     * This method counts the leaf nodes at the given depth
+     * @param depth the depth in plies
+     * @return the number of leaf nodes
+     * */
+    public long count(int depth) {
+        return count(depth, 0);
+    }
+
+    private long count(int depth, int ply) {
+        int[] moves = buffers[ply];
+        int count = position.generateLegalMoves(moves);
+        if (depth == 1)
+            return count;
+
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            position.makeMove(moves[i]);
+            nodes += count(depth - 1, ply + 1);
+            position.unmakeMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * This method prints the node count below every legal move
+     * @param depth the depth in plies
+     * @return the total number of leaf nodes
+     * */
+    public long divide(int depth) {
+        int[] moves = new int[256];
+        int count = position.generateLegalMoves(moves);
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            position.makeMove(moves[i]);
+            long nodes = depth > 1 ? count(depth - 1, 1) : 1;
+            position.unmakeMove();
+            System.out.println(Move.toString(moves[i]) + ": " + nodes);
+            total += nodes;
+        }
+        return total;
+    }
+
+    /**
+     * This method checks the node counts of all the known positions
+     * @return true if every count is correct
+     * */
+    public static boolean verify() {
+        boolean correct = true;
+        for (int i = 0; i < FENS.length; i++) {
+            for (int depth = 1; depth <= COUNTS[i].length; depth++) {
+                long nodes = new Perft(Fen.parse(FENS[i])).count(depth);
+                if (nodes != COUNTS[i][depth - 1]) {
+                    System.out.println("FAILED " + FENS[i] + " depth " + depth + ": " + nodes + " expected " + COUNTS[i][depth - 1]);
+                    correct = false;
+                }
+            }
+        }
+        return correct;
+    }
+
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--verify")) {
+            boolean correct = verify();
+            System.out.println(correct ? "All perft counts are correct" : "Perft counts are wrong");
+            System.exit(correct ? 0 : 1);
+        }
+
+        boolean divide = args.length > 0 && args[0].equals("--divide");
+        int first = divide ? 1 : 0;
+        if (args.length <= first) {
+            System.out.println("Usage: java Perft [--divide] depth [FEN] | --verify");
+            return;
+        }
+
+        int depth = Integer.parseInt(args[first]);
+        StringBuilder fen = new StringBuilder();
+        for (int i = first + 1; i < args.length; i++)
+            fen.append(args[i]).append(' ');
+        Perft perft = new Perft(Fen.parse(fen.length() > 0 ? fen.toString() : Fen.STARTING_POSITION));
+
+        long start = System.nanoTime();
+        long nodes = divide ? perft.divide(depth) : perft.count(depth);
+        long time = System.nanoTime() - start;
+        System.out.println("Nodes: " + nodes);
+        System.out.printf("Time: %d ms, %d nodes/s%n", time / 1_000_000, nodes * 1_000_000_000L / Math.max(1, time));
+    }
+}
@@ -0,0 +1,267 @@
+// Emir Adar
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This class imports a large PGN file on all cores. The file is split where a game starts into chunks that are
+ * memory mapped one at a time, so it is never read as a whole. Every chunk is read by its own PgnReader on a
+ * fork-join pool, and every game is replayed and each move checked with Game.isLegal, the rules the relay and the
+ * board use, so an imported game is exactly one that could have been played. A game that fails is counted and
+ * reported with its offset in the file, the import goes on with the next game.
+ * <p>
+ * Usage: java PgnImport [--threads n] file.pgn, prints the games and plies per second and the errors
+ * */
+public class PgnImport {
+
+    // a chunk is not split any further when it is this small, a few thousand games
+    public static final long CHUNK_SIZE = 8 << 20;
+    // only the first errors are kept to be reported, the others are only counted
+    public static final int MAX_ERRORS = 100;
+    // a chunk is mapped as a whole, so it cannot be larger than a buffer
+    private static final long MAX_MAP = Integer.MAX_VALUE;
+    // the bytes read at a time when looking for the start of a game
+    private static final int SCAN_SIZE = 16 * 1024;
+
+    /**
+     * This class holds what an import found: the counts and the first errors
+     * */
+    public static final class Report {
+        private long games;
+        private long plies;
+        private long invalid;
+        private long bytes;
+        private long chunks;
+        private long nanos;
+        private final List<String> errors = new ArrayList<>();
+        private final List<Long> offsets = new ArrayList<>();
+
+        private void error(long offset, String message) {
+            invalid++;
+            if (errors.size() < MAX_ERRORS) {
+                offsets.add(offset);
+                errors.add(message);
+            }
+        }
+
+        // the errors of both halves are kept in the order of the file
+        private Report add(Report other) {
+            games += other.games;
+            plies += other.plies;
+            bytes += other.bytes;
+            chunks += other.chunks;
+            invalid += other.invalid;
+            for (int i = 0; i < other.errors.size() && errors.size() < MAX_ERRORS; i++) {
+                offsets.add(other.offsets.get(i));
+                errors.add(other.errors.get(i));
+            }
+            return this;
+        }
+
+        /**
+         * This method gets the number of valid games
+         * */
+        public long getGames() {
+            return games;
+        }
+
+        /**
+         * This method gets the number of moves of the valid games, each player's move counts
+         * */
+        public long getPlies() {
+            return plies;
+        }
+
+        /**
+         * This method gets the number of games that were not imported because of an error
+         * */
+        public long getInvalid() {
+            return invalid;
+        }
+
+        /**
+         * This method gets the first errors in the order of the file, each with the offset of the game
+         * */
+        public List<String> getErrors() {
+            List<String> list = new ArrayList<>(errors.size());
+            for (int i = 0; i < errors.size(); i++)
+                list.add("Offset " + offsets.get(i) + ": " + errors.get(i));
+            return list;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = nanos / 1e9;
+            return String.format("%d games, %d plies, %d invalid, %.1f MB in %d chunks, %.2f s%n"
+                            + "%.0f games/s, %.0f plies/s, %.1f MB/s",
+                    games, plies, invalid, bytes / 1e6, chunks, seconds,
+                    games / seconds, plies / seconds, bytes / 1e6 / seconds);
+        }
+    }
+
+    private PgnImport() {}
+
+    /**
+     * This method imports a PGN file
+     * @param file the file
+     * @param threads the number of threads, for example the number of cores
+     * @return what was found
+     * @throws IOException if the file cannot be read
+     * */
+    public static Report run(Path file, int threads) throws IOException {
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Report report = pool.invoke(new Chunk(channel, 0, channel.size()));
+            report.nanos = System.nanoTime() - start;
+            return report;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // a part of the file that starts with a game, it is halved until it is small enough to be read
+    private static final class Chunk extends RecursiveTask<Report> {
+        private static final long serialVersionUID = 1L;
+
+        // the tasks are never serialized, the channel is shared by all of them
+        private final transient FileChannel channel;
+        private final long start;
+        private final long end;
+
+        Chunk(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Report compute() {
+            try {
+                if (end - start > CHUNK_SIZE) {
+                    long middle = nextGame(channel, start + (end - start) / 2, end);
+                    if (middle < end) {
+                        Chunk first = new Chunk(channel, start, middle);
+                        first.fork();
+                        Report second = new Chunk(channel, middle, end).compute();
+                        return first.join().add(second);
+                    }
+                }
+                return read(channel, start, end);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // a game starts with a tag after an empty line, the offset of its [ is returned, or end if there is none
+    private static long nextGame(FileChannel channel, long offset, long end) throws IOException {
+        ByteBuffer scan = ByteBuffer.allocate(SCAN_SIZE);
+        // 0 after the end of a line, 1 after an empty line, 2 in the middle of a line
+        int state = 2;
+        while (offset < end) {
+            scan.clear();
+            if (end - offset < SCAN_SIZE)
+                scan.limit((int) (end - offset));
+            int count = channel.read(scan, offset);
+            if (count <= 0)
+                return end;
+            for (int i = 0; i < count; i++) {
+                byte c = scan.get(i);
+                if (c == '[' && state == 1)
+                    return offset + i;
+                if (c == '\n')
+                    state = state == 2 ? 0 : 1;
+                else if (c != '\r')
+                    state = 2;
+            }
+            offset += count;
+        }
+        return end;
+    }
+
+    // reading and checking the games of one chunk, the chunk is mapped while it is read
+    private static Report read(FileChannel channel, long start, long end) throws IOException {
+        Report report = new Report();
+        report.bytes = end - start;
+        report.chunks = 1;
+        if (end - start > MAX_MAP) {
+            report.error(start, "No start of a game found in " + (end - start) + " bytes");
+            return report;
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        PgnReader reader = new PgnReader(buffer);
+        reader.setErrorHandler((offset, message) -> report.error(start + offset, message));
+        Position position = new Position();
+        while (reader.hasNext()) {
+            GameRecord game = reader.next();
+            String error = check(game, position);
+            if (error != null) {
+                report.error(start + reader.getOffset(), error);
+            } else {
+                report.games++;
+                report.plies += game.getMoveCount();
+            }
+        }
+        return report;
+    }
+
+    /**
+     * This method replays a game with the rules of the board
+     * @param game the game
+     * @param position a position to replay it on, it is overwritten
+     * @return what is wrong with the game, or null if every move is legal and the result fits the last position
+     * */
+    public static String check(GameRecord game, Position position) {
+        String fen = game.getStartFen();
+        try {
+            Fen.parse(fen, 0, fen.length(), position);
+        } catch (IllegalArgumentException e) {
+            return "Invalid FEN " + fen;
+        }
+        for (int i = 0; i < game.getMoveCount(); i++) {
+            int move = game.getMove(i);
+            if (!Game.isLegal(position, move))
+                return "Move " + Move.toString(move) + " after " + i + " plies is not legal on the board";
+            position.makeMove(move);
+        }
+
+        // a checkmate decides the game, whatever the result says
+        boolean white = position.isWhiteToMove();
+        if (!position.hasLegalMove(white) && position.isInCheck(white)) {
+            String result = white ? "0-1" : "1-0";
+            if (!game.getResult().equals(result) && !game.getResult().equals("*"))
+                return "Result " + game.getResult() + " after checkmate";
+        }
+        return null;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int i = 0;
+        if (args.length > 1 && args[0].equals("--threads")) {
+            threads = Integer.parseInt(args[1]);
+            i = 2;
+        }
+        if (i >= args.length) {
+            System.out.println("Usage: java PgnImport [--threads n] file.pgn");
+            return;
+        }
+        Report report = run(Path.of(args[i]), threads);
+        System.out.println(report + " on " + threads + " threads");
+        for (String error : report.getErrors())
+            System.out.println(error);
+        if (report.getInvalid() > report.getErrors().size())
+            System.out.println("... and " + (report.getInvalid() - report.getErrors().size()) + " more errors");
+    }
+}
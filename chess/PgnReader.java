@@ -0,0 +1,417 @@
+// Emir Adar
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * This class reads games in Portable Game Notation (PGN) one at a time, so a file of any size can be read
+ * with the memory of one buffer and one game. The moves are checked against the legal moves as they are read.
+ * Comments, variations and annotations are skipped. A game with a move that is not legal is skipped as a whole
+ * and counted, the reading goes on with the next game.
+ * <p>
+ * Usage: java PgnReader file.pgn, prints the number of games and moves in the file
+ * */
+public class PgnReader implements Iterator<GameRecord>, Closeable {
+
+    /**
+     * This interface is told about the games that are skipped
+     * */
+    public interface ErrorHandler {
+        /**
+         * This method is called for every game that is skipped
+         * @param offset the offset of the game's first byte from the start of the input
+         * @param message what is wrong with the game
+         * */
+        void error(long offset, String message);
+    }
+
+    // the size of the buffer the file is read through
+    public static final int BUFFER_SIZE = 64 * 1024;
+    // a move or a number in the moves is never longer than this, a longer one breaks the game
+    private static final int MAX_TOKEN = 64;
+    // a longer tag value is cut
+    private static final int MAX_TAG = 4096;
+
+    // declaring variables
+    private final ReadableByteChannel source;
+    private final ByteBuffer buffer;
+    private final byte[] token = new byte[MAX_TOKEN];
+    private final CharSequence tokenText = Fen.ascii(ByteBuffer.wrap(token));
+    private final StringBuilder tag = new StringBuilder();
+    private final int[] moves = new int[256];
+    private final Position position = new Position();
+    private GameRecord next;
+    private long games;
+    private long skipped;
+    private ErrorHandler errors;
+    // the offset of the buffer's first byte from the start of the input
+    private long base;
+    private long gameStart;
+    private String error;
+
+    /**
+     * This is the constructor for a reader of a stream, it is read through a buffer of BUFFER_SIZE bytes
+     * @param in the stream, it is closed with the reader
+     * */
+    public PgnReader(InputStream in) {
+        this.source = Channels.newChannel(in);
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.buffer.limit(0);
+    }
+
+    /**
+     * This is the constructor for a reader of the games in a buffer, for example a part of a memory mapped file
+     * @param games the buffer, it is read from its position to its limit
+     * */
+    public PgnReader(ByteBuffer games) {
+        this.source = null;
+        this.buffer = games.duplicate();
+        this.base = -games.position();
+    }
+
+    /**
+     * This method sets what is told about the games that are skipped
+     * @param errors the handler, or null
+     * */
+    public void setErrorHandler(ErrorHandler errors) {
+        this.errors = errors;
+    }
+
+    /**
+     * This method opens a PGN file
+     * @param file the file
+     * @return a reader of the games in the file
+     * @throws IOException if the file cannot be opened
+     * */
+    public static PgnReader open(Path file) throws IOException {
+        return new PgnReader(Files.newInputStream(file));
+    }
+
+    /**
+     * This method checks if there is another game
+     * @throws UncheckedIOException if the stream cannot be read
+     * */
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = readGame();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next != null;
+    }
+
+    /**
+     * This method gets the next game
+     * @throws NoSuchElementException if there are no more games
+     * */
+    @Override
+    public GameRecord next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        GameRecord game = next;
+        next = null;
+        return game;
+    }
+
+    /**
+     * This method gets the games as a stream, the stream reads them as they are needed
+     * and closing it closes the reader
+     * */
+    public Stream<GameRecord> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    /**
+     * This method gets the number of games read so far
+     * */
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * This method gets the number of games skipped so far because of a move that is not legal
+     * */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * This method gets where the game that next returned last starts, it changes with the next call of hasNext
+     * @return the offset of the game's first byte from the start of the input
+     * */
+    public long getOffset() {
+        return gameStart;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (source != null)
+            source.close();
+    }
+
+    // reading until a game is complete, a game ends with its result or where the next game's tags start
+    private GameRecord readGame() throws IOException {
+        GameRecord game = null;
+        boolean inMoves = false;
+        boolean broken = false;
+        while (true) {
+            int c = skipSpaces();
+            if (c == -1 || (c == '[' && inMoves)) {
+                // a game without a result ends where the file or the next game starts
+                if (c == '[')
+                    unread();
+                if (game == null || !inMoves || !broken)
+                    return game == null ? null : finish(game);
+                skip();
+                if (c == -1)
+                    return null;
+                game = null;
+                inMoves = false;
+                broken = false;
+                continue;
+            }
+            if (game == null) {
+                game = new GameRecord();
+                gameStart = base + buffer.position() - 1;
+            }
+
+            if (c == '[') {
+                readTag(game);
+            } else if (c == '{') {
+                skipUntil('}');
+            } else if (c == ';' || c == '%') {
+                skipUntil('\n');
+            } else if (c == '(') {
+                skipVariation();
+            } else if (c == '$') {
+                readToken(c);
+            } else if (c == ')' || c == '}' || c == ']') {
+                broken = broken || fail("Unexpected " + (char) c);
+            } else {
+                int length = readToken(c);
+                if (!inMoves) {
+                    inMoves = true;
+                    broken = !setUp(game) && fail("Invalid FEN " + game.getStartFen());
+                }
+                String result = result(length);
+                if (result != null) {
+                    if (!broken) {
+                        game.setResult(result);
+                        return finish(game);
+                    }
+                    skip();
+                    game = null;
+                    inMoves = false;
+                    broken = false;
+                } else if (!broken && length > 0) {
+                    broken = !readMove(game, length) && fail("Illegal move " + tokenText.subSequence(0, length)
+                            + " after " + game.getMoveCount() + " plies");
+                }
+            }
+        }
+    }
+
+    private GameRecord finish(GameRecord game) {
+        games++;
+        return game;
+    }
+
+    // remembering what is wrong with the game, it is always broken afterwards
+    private boolean fail(String message) {
+        error = message;
+        return true;
+    }
+
+    private void skip() {
+        skipped++;
+        if (errors != null)
+            errors.error(gameStart, error);
+    }
+
+    // the position the moves start from, the FEN tag tells if it is not the starting position
+    private boolean setUp(GameRecord game) {
+        try {
+            String fen = game.getStartFen();
+            Fen.parse(fen, 0, fen.length(), position);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // a word of the moves is a move number, a move, or both written together like 12.e4
+    private boolean readMove(GameRecord game, int length) {
+        if (length == MAX_TOKEN)
+            return false;
+        int start = 0;
+        while (start < length && token[start] >= '0' && token[start] <= '9')
+            start++;
+        if (start < length && token[start] == '.') {
+            while (start < length && token[start] == '.')
+                start++;
+        } else {
+            // castling can be written with zeros
+            start = 0;
+        }
+        if (start == length)
+            return true;
+        int move = San.parse(position, tokenText, start, length, moves);
+        if (move == Move.NONE)
+            return false;
+        position.makeMove(move);
+        game.addMove(move);
+        return true;
+    }
+
+    // checking if the word is a result
+    private String result(int length) {
+        if (length == 1 && token[0] == '*')
+            return "*";
+        if (length == 3 && token[1] == '-') {
+            if (token[0] == '1' && token[2] == '0')
+                return "1-0";
+            if (token[0] == '0' && token[2] == '1')
+                return "0-1";
+        }
+        if (length == 7 && token[0] == '1' && token[1] == '/' && token[2] == '2' && token[3] == '-'
+                && token[4] == '1' && token[5] == '/' && token[6] == '2')
+            return "1/2-1/2";
+        return null;
+    }
+
+    // a tag looks like [Name "Value"], a quote or backslash in the value has a backslash before it
+    private void readTag(GameRecord game) throws IOException {
+        tag.setLength(0);
+        int c = skipSpaces();
+        while (c != -1 && c > ' ' && c != '"' && c != ']') {
+            tag.append((char) c);
+            c = read();
+        }
+        String name = tag.toString();
+        while (c != -1 && c != '"' && c != ']')
+            c = read();
+        tag.setLength(0);
+        if (c == '"') {
+            c = read();
+            while (c != -1 && c != '"') {
+                if (c == '\\')
+                    c = read();
+                if (c != -1 && tag.length() < MAX_TAG)
+                    tag.append((char) c);
+                c = read();
+            }
+            skipUntil(']');
+        }
+        if (!name.isEmpty()) {
+            String value = tag.toString();
+            game.setTag(name, value);
+            if (name.equals("FEN"))
+                game.setStartFen(value);
+        }
+    }
+
+    // reading a word of the moves into token, the first character is already read
+    private int readToken(int c) throws IOException {
+        int length = 0;
+        while (true) {
+            if (length < MAX_TOKEN)
+                token[length++] = (byte) c;
+            c = read();
+            if (c == -1)
+                return length;
+            if (c <= ' ' || c == '{' || c == '}' || c == '(' || c == ')' || c == '[' || c == ']' || c == ';' || c == '$') {
+                unread();
+                return length;
+            }
+        }
+    }
+
+    // a variation can hold other variations and comments, all of it is skipped
+    private void skipVariation() throws IOException {
+        int depth = 1;
+        int c;
+        while (depth > 0 && (c = read()) != -1) {
+            if (c == '(')
+                depth++;
+            else if (c == ')')
+                depth--;
+            else if (c == '{')
+                skipUntil('}');
+            else if (c == ';')
+                skipUntil('\n');
+        }
+    }
+
+    private void skipUntil(int end) throws IOException {
+        int c;
+        while ((c = read()) != -1 && c != end) {
+            // skipping
+        }
+    }
+
+    private int skipSpaces() throws IOException {
+        int c;
+        while ((c = read()) != -1 && c <= ' ') {
+            // skipping
+        }
+        return c;
+    }
+
+    private int read() throws IOException {
+        if (!buffer.hasRemaining() && !fill())
+            return -1;
+        return buffer.get() & 0xFF;
+    }
+
+    // the byte that was just read is always still in the buffer
+    private void unread() {
+        buffer.position(buffer.position() - 1);
+    }
+
+    private boolean fill() throws IOException {
+        if (source == null)
+            return false;
+        base += buffer.limit();
+        buffer.clear();
+        int count;
+        do {
+            count = source.read(buffer);
+        } while (count == 0);
+        buffer.flip();
+        return count > 0;
+    }
+
+    public static void main(String[] args) throws IOException {
+        long start = System.nanoTime();
+        long moves = 0;
+        try (PgnReader reader = open(Path.of(args[0]))) {
+            while (reader.hasNext())
+                moves += reader.next().getMoveCount();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d games, %d moves, %d skipped in %.2f s (%.0f games/s)%n",
+                    reader.getGames(), moves, reader.getSkipped(), seconds, reader.getGames() / seconds);
+        }
+    }
+}
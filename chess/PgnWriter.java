@@ -0,0 +1,148 @@
+// Emir Adar
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * This class writes games in Portable Game Notation (PGN), the moves are written in SAN.
+ * The played games are only added to a file when it is set with -Dchess.pgn=<file>.
+ * */
+public final class PgnWriter {
+
+    // the file the played games are added to, empty if recording is turned off
+    public static final String FILE = System.getProperty("chess.pgn", "");
+
+    // lines of the moves are not longer than this, as the PGN standard asks
+    private static final int LINE_LENGTH = 79;
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyy.MM.dd");
+
+    private PgnWriter() {}
+
+    /**
+     * This method writes a game as PGN, followed by an empty line
+     * @param game the game
+     * @param out where the game is written
+     * @throws IOException if the game cannot be written
+     * @throws IllegalArgumentException if one of the moves is not legal
+     * */
+    public static void write(GameRecord game, Appendable out) throws IOException {
+        out.append(toPgn(game));
+    }
+
+    /**
+     * This method writes a game as PGN
+     * @param game the game
+     * @return the PGN text, ending with an empty line
+     * @throws IllegalArgumentException if one of the moves is not legal
+     * */
+    public static String toPgn(GameRecord game) {
+        StringBuilder pgn = new StringBuilder(256 + game.getMoveCount() * 8);
+        for (String tag : GameRecord.SEVEN_TAGS)
+            appendTag(pgn, tag, game.getTag(tag));
+        boolean setUp = !game.getStartFen().equals(Fen.STARTING_POSITION);
+        if (setUp && game.getTag("FEN") == null) {
+            appendTag(pgn, "SetUp", "1");
+            appendTag(pgn, "FEN", game.getStartFen());
+        }
+        for (java.util.Map.Entry<String, String> tag : game.getTags().entrySet()) {
+            if (!isSevenTag(tag.getKey()))
+                appendTag(pgn, tag.getKey(), tag.getValue());
+        }
+        pgn.append('\n');
+
+        // the moves, a line is broken before it gets too long
+        Position position = game.startPosition();
+        int[] moves = new int[256];
+        StringBuilder token = new StringBuilder(16);
+        int lineStart = pgn.length();
+        for (int i = 0; i < game.getMoveCount(); i++) {
+            int move = game.getMove(i);
+            if (!position.isLegal(Move.from(move), Move.to(move)))
+                throw new IllegalArgumentException("Illegal move " + Move.toString(move) + " in game");
+            token.setLength(0);
+            if (position.isWhiteToMove())
+                token.append(position.getFullmoveNumber()).append(". ");
+            else if (i == 0)
+                token.append(position.getFullmoveNumber()).append("... ");
+            San.append(position, move, token, moves);
+            lineStart = appendToken(pgn, token, lineStart);
+            position.makeMove(move);
+        }
+        token.setLength(0);
+        token.append(game.getResult());
+        appendToken(pgn, token, lineStart);
+        return pgn.append("\n\n").toString();
+    }
+
+    // adding a word to the moves, on a new line if it does not fit on the current one
+    private static int appendToken(StringBuilder pgn, CharSequence token, int lineStart) {
+        if (pgn.length() > lineStart) {
+            if (pgn.length() - lineStart + 1 + token.length() > LINE_LENGTH) {
+                pgn.append('\n');
+                lineStart = pgn.length();
+            } else {
+                pgn.append(' ');
+            }
+        }
+        pgn.append(token);
+        return lineStart;
+    }
+
+    private static void appendTag(StringBuilder pgn, String name, String value) {
+        pgn.append('[').append(name).append(" \"");
+        // quotes and backslashes in the value are escaped
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\')
+                pgn.append('\\');
+            pgn.append(c);
+        }
+        pgn.append("\"]\n");
+    }
+
+    private static boolean isSevenTag(String name) {
+        for (String tag : GameRecord.SEVEN_TAGS) {
+            if (tag.equals(name))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * This method adds a game to the end of a file, the file is created if it does not exist
+     * @param file the file
+     * @param game the game
+     * @throws IOException if the file cannot be written
+     * */
+    public static synchronized void append(Path file, GameRecord game) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            write(game, out);
+        }
+    }
+
+    /**
+     * This method adds a played game to the file set with -Dchess.pgn, the date is set if it is unknown
+     * @param game the game
+     * @return false if recording is turned off or the file cannot be written
+     * */
+    public static boolean record(GameRecord game) {
+        if (FILE.isEmpty())
+            return false;
+        if ("?".equals(game.getTag("Date")))
+            game.setTag("Date", LocalDate.now().format(DATE));
+        try {
+            append(Paths.get(FILE), game);
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Could not record the game in " + FILE + ": " + e.getMessage());
+            return false;
+        }
+    }
+}
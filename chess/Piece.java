@@ -6,13 +6,10 @@
 public abstract class Piece {
 
     protected final boolean white;
-    protected boolean firstMove = true;
     protected Square position;
-    protected String imageURL;
 
-    public Piece(boolean white, String imageURL){
+    public Piece(boolean white){
         this.white = white;
-        this.imageURL = imageURL;
     }
 
     /**
@@ -23,21 +20,6 @@ public abstract class Piece {
         return white;
     }
 
-    /**
-     * This method checks if it's this piece's first move
-     * @return true if it's the first move
-     * */
-    protected boolean isFirstMove() {
-        return firstMove;
-    }
-
-    /**
-     * This method sets the firstmove variable for this piece
-     * */
-    protected void setFirstMove(boolean firstMove) {
-        this.firstMove = firstMove;
-    }
-
     /**
      * This method sets the position of the piece
      * */
@@ -53,20 +35,36 @@ public abstract class Piece {
         return position;
     }
 
+    /**
+     * This method gets the type of the piece as used by the Position class
+     * @return the piece type, for example Position.ROOK
+     * */
+    public abstract int getType();
+
+    /**
+     * This method gets the piece code of this piece as used by the Position class
+     * */
+    public int getCode() {
+        return Position.pieceCode(white, getType());
+    }
+
     /**
      * Determines if the piece can move from the start square to the end square on the given board.
+     * The rules are checked against the headless position of the board.
      * @param board the chess board
      * @param start the starting square
      * @param end the ending square
      * @return true if the move is valid, false otherwise
      */
-    protected abstract boolean canMove(Board board, Square start, Square end);
+    protected boolean canMove(Board board, Square start, Square end) {
+        return board.getPosition().canMove(start.getIndex(), end.getIndex());
+    }
 
     /**
-     * This method gets the ImageURL of the image associated with this piece
+     * This method gets the ImageURL of the image associated with this piece, it is a classpath resource
      * */
     public String getImageURL() {
-        return imageURL;
+        return SpriteCache.resourceName(getCode());
     }
 
     /**
@@ -74,22 +72,7 @@ public abstract class Piece {
      * @param board the board that is being checked
      * */
     public boolean isAttacked(Board board) {
-        for (Square[] row : board.getSquares()) {
-            for (Square square : row) {
-                Piece piece = square.getPiece();
-                if (piece != null) {
-                    if (piece.isWhite() != this.isWhite()) {
-                        if (piece instanceof King) {
-                            continue;
-                        }
-                        if (piece.canMove(board, square, board.getThisKing().getPosition())) {
-                            return true;
-                        }
-                    }
-                }
-            }
-        }
-        return false;
+        return board.getPosition().isAttacked(getPosition().getIndex(), !isWhite());
     }
 
 
@@ -100,23 +83,31 @@ public abstract class Piece {
      * @param end the destination square
      * */
     public boolean kingIsInCheckAfterMove(Board board, Square start, Square end) {
-        // saving the original pieces at the start and end squares
-        Piece originalStartPiece = start.getPiece();
-        Piece originalEndPiece = end.getPiece();
-
-        // simulating the move
-        start.setPiece(null);
-        end.setPiece(this);
-
-        // checking if the king of the current player is in check
-        King currentKing = board.getThisKing();
-        boolean kingInCheck = currentKing != null && currentKing.isAttacked(board);
-
-        // undoing the move
-        start.setPiece(originalStartPiece);
-        end.setPiece(originalEndPiece);
+        // the move is simulated on the headless position, the squares are not touched
+        return board.getPosition().leavesKingInCheck(start.getIndex(), end.getIndex());
+    }
 
-        // If the king is in check after the move, the move is not valid
-        return kingInCheck;
+    /**
+     * This method creates the piece that belongs to the given piece code
+     * @param piece the piece code as used by the Position class
+     * @param position the square the piece is on
+     * @return the new piece
+     * */
+    public static Piece create(int piece, Square position) {
+        boolean white = Position.isWhite(piece);
+        switch (Position.typeOf(piece)) {
+            case Position.PAWN:
+                return new Pawn(white, position);
+            case Position.KNIGHT:
+                return new Knight(white, position);
+            case Position.BISHOP:
+                return new Bishop(white, position);
+            case Position.ROOK:
+                return new Rook(white, position);
+            case Position.QUEEN:
+                return new Queen(white, position);
+            default:
+                return new King(white, position);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,919 @@
+// Emir Adar
+
+/**
+ * This class represents a chess position as pure data, it does not depend on any Swing components
+ * and can therefore be used in a headless JVM.
+ * Squares are indexed from 0 (a1) to 63 (h8), every piece type and color has its own 64-bit bitboard.
+ * */
+public class Position {
+
+    // piece types
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+
+    // colors
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    // marks an empty square, a missing en passant square or a missing promotion
+    public static final int EMPTY = -1;
+
+    // castling rights
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+
+    private static final String[] TYPE_NAMES = {"Pawn", "Knight", "Bishop", "Rook", "Queen", "King"};
+
+    // the castling rights that are kept when a piece moves from or to the given square
+    private static final int[] CASTLING_MASK = new int[64];
+
+    static {
+        java.util.Arrays.fill(CASTLING_MASK, 15);
+        CASTLING_MASK[0] = ~WHITE_QUEENSIDE & 15;
+        CASTLING_MASK[4] = ~(WHITE_KINGSIDE | WHITE_QUEENSIDE) & 15;
+        CASTLING_MASK[7] = ~WHITE_KINGSIDE & 15;
+        CASTLING_MASK[56] = ~BLACK_QUEENSIDE & 15;
+        CASTLING_MASK[60] = ~(BLACK_KINGSIDE | BLACK_QUEENSIDE) & 15;
+        CASTLING_MASK[63] = ~BLACK_KINGSIDE & 15;
+    }
+
+    // declaring variables
+    private final long[] pieces = new long[12];
+    private final long[] colors = new long[2];
+    private final int[] board = new int[64];
+    private boolean whiteToMove = true;
+    private int castlingRights;
+    private int enPassantSquare = EMPTY;
+    private int halfmoveClock;
+    private int fullmoveNumber = 1;
+
+    // the Zobrist key of the position, it is updated together with the pieces and the state
+    private long key;
+
+    // the undo records of the moves made so far, one packed long per move
+    private long[] history = new long[256];
+    private long[] keyHistory = new long[256];
+    private int ply;
+
+    // the pieces giving check, the pinned pieces of the side to move and the squares each side attacks,
+    // the bits of known tell which of them are up to date, they are saved for every move as well
+    private long checkers;
+    private long pinned;
+    private final long[] attacks = new long[2];
+    private int known;
+    private long[] knownHistory = new long[256 * 5];
+
+    private static final int CHECK_INFO = 1;
+    private static final int WHITE_ATTACKS = 2;
+    private static final int BLACK_ATTACKS = 4;
+
+    /**
+     * This is the constructor for an empty position with white to move
+     * */
+    public Position() {
+        java.util.Arrays.fill(board, EMPTY);
+    }
+
+    /**
+     * This is the copy constructor for this class
+     * @param other the position that is copied
+     * */
+    public Position(Position other) {
+        System.arraycopy(other.pieces, 0, pieces, 0, pieces.length);
+        System.arraycopy(other.colors, 0, colors, 0, colors.length);
+        System.arraycopy(other.board, 0, board, 0, board.length);
+        whiteToMove = other.whiteToMove;
+        castlingRights = other.castlingRights;
+        enPassantSquare = other.enPassantSquare;
+        halfmoveClock = other.halfmoveClock;
+        fullmoveNumber = other.fullmoveNumber;
+        history = other.history.clone();
+        keyHistory = other.keyHistory.clone();
+        key = other.key;
+        ply = other.ply;
+        checkers = other.checkers;
+        pinned = other.pinned;
+        attacks[WHITE] = other.attacks[WHITE];
+        attacks[BLACK] = other.attacks[BLACK];
+        known = other.known;
+        knownHistory = other.knownHistory.clone();
+    }
+
+    /**
+     * This method empties the position so that the object can be used again, for example to read many positions
+     * */
+    public void clear() {
+        java.util.Arrays.fill(pieces, 0);
+        java.util.Arrays.fill(colors, 0);
+        java.util.Arrays.fill(board, EMPTY);
+        whiteToMove = true;
+        castlingRights = 0;
+        enPassantSquare = EMPTY;
+        halfmoveClock = 0;
+        fullmoveNumber = 1;
+        key = 0;
+        ply = 0;
+        known = 0;
+    }
+
+    /**
+     * This method creates the standard starting position
+     * @return a new position with all pieces on their starting squares
+     * */
+    public static Position startingPosition() {
+        Position position = new Position();
+        int[] backRank = {ROOK, KNIGHT, BISHOP, QUEEN, KING, BISHOP, KNIGHT, ROOK};
+        for (int file = 0; file < 8; file++) {
+            position.put(file, pieceCode(true, backRank[file]));
+            position.put(8 + file, pieceCode(true, PAWN));
+            position.put(48 + file, pieceCode(false, PAWN));
+            position.put(56 + file, pieceCode(false, backRank[file]));
+        }
+        position.setCastlingRights(WHITE_KINGSIDE | WHITE_QUEENSIDE | BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        return position;
+    }
+
+    /**
+     * This method converts the board coordinates used by the GUI to a square index
+     * @param row the row of the square, 0 is the eighth rank
+     * @param col the column of the square, 0 is the a-file
+     * @return the square index, 0 is a1 and 63 is h8
+     * */
+    public static int index(int row, int col) {
+        return (7 - row) * 8 + col;
+    }
+
+    /**
+     * This method gets the GUI row of the given square index
+     * */
+    public static int row(int square) {
+        return 7 - (square >>> 3);
+    }
+
+    /**
+     * This method gets the GUI column of the given square index
+     * */
+    public static int col(int square) {
+        return square & 7;
+    }
+
+    /**
+     * This method gets the rank of the given square index, 0 is the first rank
+     * */
+    public static int rank(int square) {
+        return square >>> 3;
+    }
+
+    /**
+     * This method gets the file of the given square index, 0 is the a-file
+     * */
+    public static int file(int square) {
+        return square & 7;
+    }
+
+    /**
+     * This method combines a color and a piece type into a piece code
+     * @param white true for a white piece
+     * @param type the piece type, for example ROOK
+     * @return the piece code, white pieces are 0-5 and black pieces are 6-11
+     * */
+    public static int pieceCode(boolean white, int type) {
+        return white ? type : 6 + type;
+    }
+
+    /**
+     * This method gets the piece type of a piece code
+     * */
+    public static int typeOf(int piece) {
+        return piece < 6 ? piece : piece - 6;
+    }
+
+    /**
+     * This method checks the color of a piece code
+     * @return true if the piece is white
+     * */
+    public static boolean isWhite(int piece) {
+        return piece < 6;
+    }
+
+    /**
+     * This method converts a piece name such as "Queen" to a piece type
+     * @param name the simple class name of the piece, can be null
+     * @return the piece type or EMPTY if the name is not a piece
+     * */
+    public static int typeFromName(String name) {
+        if (name == null)
+            return EMPTY;
+        switch (name) {
+            case "Pawn":
+                return PAWN;
+            case "Knight":
+                return KNIGHT;
+            case "Bishop":
+                return BISHOP;
+            case "Rook":
+                return ROOK;
+            case "Queen":
+                return QUEEN;
+            case "King":
+                return KING;
+            default:
+                return EMPTY;
+        }
+    }
+
+    /**
+     * This method converts a piece type to its name, for example QUEEN = "Queen"
+     * @param type the piece type
+     * @return the simple class name of the piece
+     * */
+    public static String typeName(int type) {
+        return TYPE_NAMES[type];
+    }
+
+    /**
+     * This method puts a piece on an empty square
+     * @param square the square index
+     * @param piece the piece code
+     * */
+    public void put(int square, int piece) {
+        long bit = 1L << square;
+        pieces[piece] |= bit;
+        colors[isWhite(piece) ? WHITE : BLACK] |= bit;
+        board[square] = piece;
+        key ^= Zobrist.piece(piece, square);
+        known = 0;
+    }
+
+    /**
+     * This method removes the piece on the given square, if there is one
+     * @param square the square index
+     * */
+    public void remove(int square) {
+        int piece = board[square];
+        if (piece != EMPTY) {
+            long bit = ~(1L << square);
+            pieces[piece] &= bit;
+            colors[isWhite(piece) ? WHITE : BLACK] &= bit;
+            board[square] = EMPTY;
+            key ^= Zobrist.piece(piece, square);
+            known = 0;
+        }
+    }
+
+    /**
+     * This method gets the piece on the given square
+     * @return the piece code or EMPTY
+     * */
+    public int pieceAt(int square) {
+        return board[square];
+    }
+
+    /**
+     * This method gets the bitboard of a piece
+     * @param piece the piece code
+     * */
+    public long getPieces(int piece) {
+        return pieces[piece];
+    }
+
+    /**
+     * This method gets the bitboard of all the pieces of one color
+     * @param white true for the white pieces
+     * */
+    public long getPieces(boolean white) {
+        return colors[white ? WHITE : BLACK];
+    }
+
+    /**
+     * This method gets the bitboard of all the pieces on the board
+     * */
+    public long getOccupied() {
+        return colors[WHITE] | colors[BLACK];
+    }
+
+    public boolean isWhiteToMove() {
+        return whiteToMove;
+    }
+
+    public void setWhiteToMove(boolean whiteToMove) {
+        if (this.whiteToMove != whiteToMove)
+            key ^= Zobrist.blackToMove();
+        this.whiteToMove = whiteToMove;
+        known = 0;
+    }
+
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    public void setCastlingRights(int castlingRights) {
+        key ^= Zobrist.castling(this.castlingRights) ^ Zobrist.castling(castlingRights);
+        this.castlingRights = castlingRights;
+    }
+
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    public void setEnPassantSquare(int enPassantSquare) {
+        key ^= Zobrist.enPassant(this.enPassantSquare) ^ Zobrist.enPassant(enPassantSquare);
+        this.enPassantSquare = enPassantSquare;
+    }
+
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public void setHalfmoveClock(int halfmoveClock) {
+        this.halfmoveClock = halfmoveClock;
+    }
+
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    public void setFullmoveNumber(int fullmoveNumber) {
+        this.fullmoveNumber = fullmoveNumber;
+    }
+
+    /**
+     * This method gets the square of the king of the given color
+     * @param white true for the white king
+     * @return the square index or EMPTY if there is no such king
+     * */
+    public int kingSquare(boolean white) {
+        long king = pieces[pieceCode(white, KING)];
+        return king == 0 ? EMPTY : Long.numberOfTrailingZeros(king);
+    }
+
+    /**
+     * This method checks if the piece on the start square can move to the end square according to the
+     * movement rules of the piece, it does not check if the move leaves the own king in check
+     * @param from the start square
+     * @param to the end square
+     * @return true if the move follows the rules of the piece
+     * */
+    public boolean canMove(int from, int to) {
+        int piece = board[from];
+        if (piece == EMPTY || from == to)
+            return false;
+
+        // checking if the end square is occupied by a piece of the same color
+        boolean white = isWhite(piece);
+        long target = 1L << to;
+        if ((colors[white ? WHITE : BLACK] & target) != 0)
+            return false;
+
+        switch (typeOf(piece)) {
+            case PAWN:
+                return canPawnMove(from, to, white);
+            case KNIGHT:
+                return (Attacks.knight(from) & target) != 0;
+            case BISHOP:
+                return (Attacks.bishop(from, getOccupied()) & target) != 0;
+            case ROOK:
+                return (Attacks.rook(from, getOccupied()) & target) != 0;
+            case QUEEN:
+                return (Attacks.queen(from, getOccupied()) & target) != 0;
+            default:
+                return (Attacks.king(from) & target) != 0 || canCastle(from, to, white);
+        }
+    }
+
+    private boolean canPawnMove(int from, int to, boolean white) {
+        int forward = white ? 8 : -8;
+
+        // checking for a normal move, a pawn on its starting rank may move two squares
+        if (board[to] == EMPTY && (to == from + forward
+                || (to == from + 2 * forward && rank(from) == (white ? 1 : 6) && board[from + forward] == EMPTY)))
+            return true;
+
+        // checking for a capture move, including en passant
+        return (Attacks.pawn(white, from) & 1L << to) != 0 && (board[to] != EMPTY || to == enPassantSquare);
+    }
+
+    private boolean canCastle(int from, int to, boolean white) {
+        if (from != (white ? 4 : 60) || (to != from + 2 && to != from - 2))
+            return false;
+
+        boolean kingside = to > from;
+        int right = white ? (kingside ? WHITE_KINGSIDE : WHITE_QUEENSIDE) : (kingside ? BLACK_KINGSIDE : BLACK_QUEENSIDE);
+        int rookSquare = kingside ? from + 3 : from - 4;
+        if ((castlingRights & right) == 0 || board[rookSquare] != pieceCode(white, ROOK))
+            return false;
+
+        // checking if the path between the king and the rook is clear
+        if ((Attacks.rook(from, getOccupied()) & 1L << rookSquare) == 0)
+            return false;
+
+        // the king may not castle out of or through check
+        int step = kingside ? 1 : -1;
+        return !isInCheck(white) && !isAttacked(from + step, !white);
+    }
+
+    /**
+     * This method checks if the given square is attacked by any piece of the given color
+     * @param square the square index
+     * @param byWhite true if the attacking pieces are white
+     * @return true if the square is attacked
+     * */
+    public boolean isAttacked(int square, boolean byWhite) {
+        return attackersOf(square, byWhite, getOccupied()) != 0;
+    }
+
+    // looking from the square with every kind of piece and collecting the enemy pieces it sees
+    private long attackersOf(int square, boolean byWhite, long occupied) {
+        long queens = pieces[pieceCode(byWhite, QUEEN)];
+        return (Attacks.pawn(!byWhite, square) & pieces[pieceCode(byWhite, PAWN)])
+                | (Attacks.knight(square) & pieces[pieceCode(byWhite, KNIGHT)])
+                | (Attacks.king(square) & pieces[pieceCode(byWhite, KING)])
+                | (Attacks.bishop(square, occupied) & (pieces[pieceCode(byWhite, BISHOP)] | queens))
+                | (Attacks.rook(square, occupied) & (pieces[pieceCode(byWhite, ROOK)] | queens));
+    }
+
+    /**
+     * This method checks if the king of the given color is in check,
+     * for the side to move this only reads the saved checkers
+     * @param white true for the white king
+     * */
+    public boolean isInCheck(boolean white) {
+        if (white == whiteToMove)
+            return getCheckers() != 0;
+        int king = kingSquare(white);
+        return king != EMPTY && isAttacked(king, !white);
+    }
+
+    /**
+     * This method gets the pieces that give check to the king of the side to move
+     * @return the bitboard of the checking pieces
+     * */
+    public long getCheckers() {
+        if ((known & CHECK_INFO) == 0)
+            updateCheckInfo();
+        return checkers;
+    }
+
+    /**
+     * This method gets the pieces of the side to move that are pinned to their own king
+     * @return the bitboard of the pinned pieces
+     * */
+    public long getPinned() {
+        if ((known & CHECK_INFO) == 0)
+            updateCheckInfo();
+        return pinned;
+    }
+
+    /**
+     * This method checks if the piece on the given square is pinned to the king of the side to move
+     * @param square the square index
+     * */
+    public boolean isPinned(int square) {
+        return (getPinned() & 1L << square) != 0;
+    }
+
+    /**
+     * This method gets every square that the pieces of one color attack
+     * @param white true for the white pieces
+     * @return the bitboard of the attacked squares
+     * */
+    public long getAttacks(boolean white) {
+        int color = white ? WHITE : BLACK;
+        int flag = white ? WHITE_ATTACKS : BLACK_ATTACKS;
+        if ((known & flag) == 0) {
+            long occupied = getOccupied();
+            long map = 0;
+            long own = colors[color];
+            while (own != 0) {
+                int square = Long.numberOfTrailingZeros(own);
+                own &= own - 1;
+                switch (typeOf(board[square])) {
+                    case PAWN:
+                        map |= Attacks.pawn(white, square);
+                        break;
+                    case KNIGHT:
+                        map |= Attacks.knight(square);
+                        break;
+                    case BISHOP:
+                        map |= Attacks.bishop(square, occupied);
+                        break;
+                    case ROOK:
+                        map |= Attacks.rook(square, occupied);
+                        break;
+                    case QUEEN:
+                        map |= Attacks.queen(square, occupied);
+                        break;
+                    default:
+                        map |= Attacks.king(square);
+                }
+            }
+            attacks[color] = map;
+            known |= flag;
+        }
+        return attacks[color];
+    }
+
+    private void updateCheckInfo() {
+        boolean white = whiteToMove;
+        int king = kingSquare(white);
+        checkers = 0;
+        pinned = 0;
+        if (king != EMPTY) {
+            long occupied = getOccupied();
+            checkers = attackersOf(king, !white, occupied);
+
+            // an enemy slider on a line with the king pins the piece if it is the only one in between
+            long queens = pieces[pieceCode(!white, QUEEN)];
+            long snipers = (Attacks.rook(king, 0) & (pieces[pieceCode(!white, ROOK)] | queens))
+                    | (Attacks.bishop(king, 0) & (pieces[pieceCode(!white, BISHOP)] | queens));
+            while (snipers != 0) {
+                long between = Attacks.between(king, Long.numberOfTrailingZeros(snipers)) & occupied;
+                if (Long.bitCount(between) == 1)
+                    pinned |= between & colors[white ? WHITE : BLACK];
+                snipers &= snipers - 1;
+            }
+        }
+        known |= CHECK_INFO;
+    }
+
+    /**
+     * This method checks if the king of the moving piece is in check after the move
+     * @param from the start square
+     * @param to the end square
+     * @return true if the move leaves the own king in check
+     * */
+    public boolean leavesKingInCheck(int from, int to) {
+        if (isWhite(board[from]) == whiteToMove)
+            return !isLegalMove(Move.of(from, to));
+
+        // making and unmaking the move in place, nothing is allocated
+        boolean white = isWhite(board[from]);
+        makeMove(Move.of(from, to));
+        boolean inCheck = isInCheck(white);
+        unmakeMove();
+        return inCheck;
+    }
+
+    /**
+     * This method checks if a move of the side to move that follows the rules of the piece leaves the own
+     * king safe, it uses the checkers and the pinned pieces instead of making the move
+     * @param move the encoded move
+     * @return true if the move is legal
+     * */
+    public boolean isLegalMove(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        boolean white = whiteToMove;
+        int king = kingSquare(white);
+        if (king == EMPTY)
+            return true;
+
+        // the king may not move to an attacked square, it does not block the attacks on its new square
+        if (from == king)
+            return attackersOf(to, !white, getOccupied() ^ 1L << from) == 0;
+
+        // en passant removes two pieces from a line, this rare case is made and checked
+        if (typeOf(board[from]) == PAWN && to == enPassantSquare) {
+            makeMove(move);
+            boolean inCheck = isAttacked(king, !white);
+            unmakeMove();
+            return !inCheck;
+        }
+
+        // in check the move has to capture the checking piece or block it, a double check can't be blocked
+        long checking = getCheckers();
+        if (checking != 0) {
+            if ((checking & checking - 1) != 0)
+                return false;
+            long evasions = checking | Attacks.between(king, Long.numberOfTrailingZeros(checking));
+            if ((evasions & 1L << to) == 0)
+                return false;
+        }
+
+        // a pinned piece may only move along the line of the pin
+        return (getPinned() & 1L << from) == 0 || (Attacks.line(king, from) & 1L << to) != 0;
+    }
+
+    /**
+     * This method checks if the move is legal for the piece on the start square
+     * @param from the start square
+     * @param to the end square
+     * @return true if the piece can move there without leaving its own king in check
+     * */
+    public boolean isLegal(int from, int to) {
+        return canMove(from, to) && !leavesKingInCheck(from, to);
+    }
+
+    /**
+     * This method checks if the given color has at least one legal move
+     * @param white true for the white pieces
+     * */
+    public boolean hasLegalMove(boolean white) {
+        long own = colors[white ? WHITE : BLACK];
+        while (own != 0) {
+            int from = Long.numberOfTrailingZeros(own);
+            own &= own - 1;
+
+            // only the squares the piece attacks or can step to have to be tried
+            long targets = candidateSquares(from, white);
+            while (targets != 0) {
+                if (isLegal(from, Long.numberOfTrailingZeros(targets)))
+                    return true;
+                targets &= targets - 1;
+            }
+        }
+        return false;
+    }
+
+    // a superset of the squares the piece on the given square can move to, canMove decides the rest
+    private long candidateSquares(int from, boolean white) {
+        switch (typeOf(board[from])) {
+            case PAWN:
+                long forward = white ? 1L << from << 8 | 1L << from << 16 : 1L << from >>> 8 | 1L << from >>> 16;
+                return Attacks.pawn(white, from) | forward;
+            case KNIGHT:
+                return Attacks.knight(from);
+            case BISHOP:
+                return Attacks.bishop(from, getOccupied());
+            case ROOK:
+                return Attacks.rook(from, getOccupied());
+            case QUEEN:
+                return Attacks.queen(from, getOccupied());
+            default:
+                return Attacks.king(from) | (from == (white ? 4 : 60) ? 1L << from + 2 | 1L << from - 2 : 0);
+        }
+    }
+
+    /**
+     * This method checks if the king of the given color is checkmated
+     * @param white true for the white king
+     * */
+    public boolean isCheckmate(boolean white) {
+        return isInCheck(white) && !hasLegalMove(white);
+    }
+
+    /**
+     * This method generates the moves of the side to move according to the movement rules of the pieces,
+     * the moves may still leave the own king in check
+     * @param moves the array the encoded moves are written to, 256 entries are always enough
+     * @return the number of moves
+     * */
+    public int generateMoves(int[] moves) {
+        int count = 0;
+        boolean white = whiteToMove;
+        long own = colors[white ? WHITE : BLACK];
+        long occupied = getOccupied();
+        long remaining = own;
+        while (remaining != 0) {
+            int from = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+            switch (typeOf(board[from])) {
+                case PAWN:
+                    count = addPawnMoves(moves, count, from, white);
+                    break;
+                case KNIGHT:
+                    count = addMoves(moves, count, from, Attacks.knight(from) & ~own);
+                    break;
+                case BISHOP:
+                    count = addMoves(moves, count, from, Attacks.bishop(from, occupied) & ~own);
+                    break;
+                case ROOK:
+                    count = addMoves(moves, count, from, Attacks.rook(from, occupied) & ~own);
+                    break;
+                case QUEEN:
+                    count = addMoves(moves, count, from, Attacks.queen(from, occupied) & ~own);
+                    break;
+                default:
+                    count = addMoves(moves, count, from, Attacks.king(from) & ~own);
+                    if (canCastle(from, from + 2, white))
+                        moves[count++] = Move.of(from, from + 2);
+                    if (canCastle(from, from - 2, white))
+                        moves[count++] = Move.of(from, from - 2);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * This method generates the legal moves of the side to move
+     * @param moves the array the encoded moves are written to, 256 entries are always enough
+     * @return the number of moves
+     * */
+    public int generateLegalMoves(int[] moves) {
+        int count = generateMoves(moves);
+        int legal = 0;
+        for (int i = 0; i < count; i++) {
+            if (isLegalMove(moves[i]))
+                moves[legal++] = moves[i];
+        }
+        return legal;
+    }
+
+    private int addPawnMoves(int[] moves, int count, int from, boolean white) {
+        int forward = white ? 8 : -8;
+        int to = from + forward;
+
+        // normal moves, a pawn on its starting rank may move two squares
+        if (board[to] == EMPTY) {
+            count = addPawnMove(moves, count, from, to);
+            if (rank(from) == (white ? 1 : 6) && board[to + forward] == EMPTY)
+                moves[count++] = Move.of(from, to + forward);
+        }
+
+        // capture moves, including en passant
+        long targets = colors[white ? BLACK : WHITE];
+        if (enPassantSquare != EMPTY)
+            targets |= 1L << enPassantSquare;
+        long captures = Attacks.pawn(white, from) & targets;
+        while (captures != 0) {
+            count = addPawnMove(moves, count, from, Long.numberOfTrailingZeros(captures));
+            captures &= captures - 1;
+        }
+        return count;
+    }
+
+    private int addPawnMove(int[] moves, int count, int from, int to) {
+        if (rank(to) == 7 || rank(to) == 0) {
+            for (int promotion = QUEEN; promotion >= KNIGHT; promotion--)
+                moves[count++] = Move.of(from, to, promotion);
+        } else {
+            moves[count++] = Move.of(from, to);
+        }
+        return count;
+    }
+
+    private int addMoves(int[] moves, int count, int from, long targets) {
+        while (targets != 0) {
+            moves[count++] = Move.of(from, Long.numberOfTrailingZeros(targets));
+            targets &= targets - 1;
+        }
+        return count;
+    }
+
+    /**
+     * This method performs a move, it handles captures, en passant, castling and promotions
+     * and updates the castling rights, the en passant square, the clocks and the side to move.
+     * The move is not validated, castling is given as the king moving two squares.
+     * @param from the start square
+     * @param to the end square
+     * @param promotion the piece type a pawn is promoted to, EMPTY defaults to a queen
+     * */
+    public void makeMove(int from, int to, int promotion) {
+        makeMove(Move.of(from, to, promotion));
+    }
+
+    /**
+     * This method performs an encoded move and saves what is needed to take it back with unmakeMove
+     * @param move the encoded move, a pawn reaching the last rank without a promotion becomes a queen
+     * */
+    public void makeMove(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int piece = board[from];
+        int captured = board[to];
+        boolean white = isWhite(piece);
+        int type = typeOf(piece);
+        boolean enPassant = type == PAWN && to == enPassantSquare && captured == EMPTY;
+
+        if (type == PAWN && (rank(to) == 7 || rank(to) == 0) && Move.promotion(move) == EMPTY)
+            move = Move.of(from, to, QUEEN);
+
+        // saving the undo record: the move, the captured piece and the previous state
+        if (ply == history.length) {
+            history = java.util.Arrays.copyOf(history, ply * 2);
+            keyHistory = java.util.Arrays.copyOf(keyHistory, ply * 2);
+            knownHistory = java.util.Arrays.copyOf(knownHistory, ply * 10);
+        }
+        int saved = ply * 5;
+        knownHistory[saved] = checkers;
+        knownHistory[saved + 1] = pinned;
+        knownHistory[saved + 2] = attacks[WHITE];
+        knownHistory[saved + 3] = attacks[BLACK];
+        knownHistory[saved + 4] = known;
+        keyHistory[ply] = key;
+        history[ply++] = move
+                | (long) (captured + 1) << 16
+                | (long) castlingRights << 20
+                | (long) (enPassantSquare + 1) << 24
+                | (enPassant ? 1L : 0L) << 31
+                | (long) halfmoveClock << 32;
+
+        // removing the pawn that is captured en passant
+        if (enPassant)
+            remove(white ? to - 8 : to + 8);
+
+        remove(to);
+        remove(from);
+
+        // replacing the pawn with the chosen piece if it reaches the last rank
+        int promotion = Move.promotion(move);
+        put(to, promotion == EMPTY ? piece : pieceCode(white, promotion));
+
+        // moving the rook as well if this is a castling move
+        if (type == KING && Math.abs(to - from) == 2)
+            moveRook(to > from ? from + 3 : from - 4, to > from ? from + 1 : from - 1);
+
+        setCastlingRights(castlingRights & CASTLING_MASK[from] & CASTLING_MASK[to]);
+        setEnPassantSquare(type == PAWN && Math.abs(to - from) == 16 ? (from + to) / 2 : EMPTY);
+        halfmoveClock = type == PAWN || captured != EMPTY ? 0 : halfmoveClock + 1;
+        if (!white)
+            fullmoveNumber++;
+        whiteToMove = !white;
+        key ^= Zobrist.blackToMove();
+        known = 0;
+    }
+
+    /**
+     * This method takes back the last move made with makeMove
+     * */
+    public void unmakeMove() {
+        long undo = history[--ply];
+        int move = (int) (undo & 0xFFFF);
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int captured = (int) (undo >>> 16 & 15) - 1;
+
+        whiteToMove = !whiteToMove;
+        boolean white = whiteToMove;
+        int piece = Move.promotion(move) == EMPTY ? board[to] : pieceCode(white, PAWN);
+
+        // putting the moving piece back and restoring the captured piece
+        remove(to);
+        put(from, piece);
+        if (captured != EMPTY)
+            put(to, captured);
+        if ((undo >>> 31 & 1) != 0)
+            put(white ? to - 8 : to + 8, pieceCode(!white, PAWN));
+
+        // moving the rook back if this was a castling move
+        if (typeOf(piece) == KING && Math.abs(to - from) == 2)
+            moveRook(to > from ? from + 1 : from - 1, to > from ? from + 3 : from - 4);
+
+        castlingRights = (int) (undo >>> 20 & 15);
+        enPassantSquare = (int) (undo >>> 24 & 127) - 1;
+        halfmoveClock = (int) (undo >>> 32 & 0xFFFF);
+        if (!white)
+            fullmoveNumber--;
+
+        // the key and the check information of the position before the move are still valid
+        key = keyHistory[ply];
+        int saved = ply * 5;
+        checkers = knownHistory[saved];
+        pinned = knownHistory[saved + 1];
+        attacks[WHITE] = knownHistory[saved + 2];
+        attacks[BLACK] = knownHistory[saved + 3];
+        known = (int) knownHistory[saved + 4];
+    }
+
+    private void moveRook(int from, int to) {
+        int rook = board[from];
+        remove(from);
+        put(to, rook);
+    }
+
+    /**
+     * This method gets the Zobrist key of the position, equal positions have equal keys
+     * */
+    public long getKey() {
+        return key;
+    }
+
+    /**
+     * This method calculates the Zobrist key from scratch, it is used to check the updated key
+     * */
+    public long computeKey() {
+        long computed = Zobrist.castling(castlingRights) ^ Zobrist.enPassant(enPassantSquare);
+        if (!whiteToMove)
+            computed ^= Zobrist.blackToMove();
+        for (int square = 0; square < 64; square++) {
+            if (board[square] != EMPTY)
+                computed ^= Zobrist.piece(board[square], square);
+        }
+        return computed;
+    }
+
+    /**
+     * This method checks if the position has occurred before since the last capture or pawn move
+     * */
+    public boolean isRepetition() {
+        int first = Math.max(0, ply - halfmoveClock);
+        for (int i = ply - 2; i >= first; i -= 2) {
+            if (keyHistory[i] == key)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * This method gets the number of moves that have been made and can be taken back
+     * */
+    public int getPly() {
+        return ply;
+    }
+}
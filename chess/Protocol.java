@@ -0,0 +1,218 @@
+// Emir Adar
+import java.nio.ByteBuffer;
+
+/**
+ * This class describes the binary frames that clients and the relay may use instead of text lines.
+ * A binary frame starts with a byte that has the high bit set, which a text line never has, so both
+ * kinds can be mixed on one connection. The first byte holds the type, the next two the payload length.
+ * <p>
+ * The binary format is agreed on during the handshake: a client sends "HELLO id BINARY", a relay that
+ * understands binary frames answers that client alone with "BINARY gameId", and white and black tell
+ * each other with "WHITE BINARY" and "BLACK BINARY". Without all of that the text format is used.
+ * */
+public final class Protocol {
+
+    // the first byte of every binary frame has this bit set
+    public static final int BINARY = 0x80;
+    public static final int HEADER = 3;
+
+    // a move: game id (4 bytes), sequence number (2 bytes), the move as encoded by Move (2 bytes)
+    public static final int MOVE = 1;
+    public static final int MOVE_SIZE = HEADER + 8;
+
+    // a rejected move, sent only to the player who sent it: game id (4 bytes), sequence number (2 bytes), reason (1 byte)
+    public static final int ERROR = 2;
+    public static final int ERROR_SIZE = HEADER + 7;
+
+    // a position: game id (4 bytes), number of moves (2 bytes), the 64 squares with 4 bits each (32 bytes),
+    // side to move and castling rights (1 byte), en passant square (1 byte), halfmove clock and fullmove number (2 bytes each)
+    public static final int SNAPSHOT = 3;
+    public static final int SNAPSHOT_SIZE = HEADER + 44;
+
+    // the reasons a move is rejected, the text format sends the name in an "ERROR reason move" line
+    public static final int ILLEGAL = 1;
+    public static final int NOT_YOUR_TURN = 2;
+    public static final int OUT_OF_SEQUENCE = 3;
+    public static final int GAME_OVER = 4;
+    private static final String[] REASONS = {"", "illegal", "turn", "sequence", "over"};
+
+    private Protocol() {}
+
+    /**
+     * This method checks if a byte starts a binary frame
+     * @param first the first byte of the frame
+     * */
+    public static boolean isBinary(byte first) {
+        return (first & BINARY) != 0;
+    }
+
+    /**
+     * This method writes the header of a binary frame
+     * @param buffer the buffer the frame is written to
+     * @param type the type of the frame
+     * @param length the number of bytes after the header
+     * */
+    public static void putHeader(ByteBuffer buffer, int type, int length) {
+        buffer.put((byte) (BINARY | type));
+        buffer.putShort((short) length);
+    }
+
+    /**
+     * This method writes a move frame, several frames can be written into one buffer and sent together
+     * @param buffer the buffer the frame is written to
+     * @param game the game id the relay gave
+     * @param sequence the number of the move in the game, starting at 1
+     * @param move the move as encoded by Move
+     * */
+    public static void putMove(ByteBuffer buffer, int game, int sequence, int move) {
+        putHeader(buffer, MOVE, MOVE_SIZE - HEADER);
+        buffer.putInt(game);
+        buffer.putShort((short) sequence);
+        buffer.putShort((short) move);
+    }
+
+    /**
+     * This method encodes a single move frame
+     * @return the frame, ready to be sent
+     * */
+    public static ByteBuffer encodeMove(int game, int sequence, int move) {
+        ByteBuffer buffer = ByteBuffer.allocate(MOVE_SIZE);
+        putMove(buffer, game, sequence, move);
+        return buffer.flip();
+    }
+
+    /**
+     * This method encodes an error frame
+     * @param game the game id
+     * @param sequence the sequence number of the rejected move
+     * @param reason why the move was rejected, for example ILLEGAL
+     * @return the frame, ready to be sent
+     * */
+    public static ByteBuffer encodeError(int game, int sequence, int reason) {
+        ByteBuffer buffer = ByteBuffer.allocate(ERROR_SIZE);
+        putHeader(buffer, ERROR, ERROR_SIZE - HEADER);
+        buffer.putInt(game);
+        buffer.putShort((short) sequence);
+        buffer.put((byte) reason);
+        return buffer.flip();
+    }
+
+    /**
+     * This method encodes a snapshot frame, it is how a client catches up without replaying the whole game
+     * @param game the game id
+     * @param sequence the number of moves made in the game
+     * @param position the position
+     * @return the frame, ready to be sent
+     * */
+    public static ByteBuffer encodeSnapshot(int game, int sequence, Position position) {
+        ByteBuffer buffer = ByteBuffer.allocate(SNAPSHOT_SIZE);
+        putHeader(buffer, SNAPSHOT, SNAPSHOT_SIZE - HEADER);
+        buffer.putInt(game);
+        buffer.putShort((short) sequence);
+        // two squares per byte, 0 is an empty square and the piece codes start at 1
+        for (int square = 0; square < 64; square += 2)
+            buffer.put((byte) ((position.pieceAt(square) + 1) << 4 | (position.pieceAt(square + 1) + 1)));
+        buffer.put((byte) ((position.isWhiteToMove() ? 1 : 0) | position.getCastlingRights() << 1));
+        buffer.put((byte) position.getEnPassantSquare());
+        buffer.putShort((short) position.getHalfmoveClock());
+        buffer.putShort((short) position.getFullmoveNumber());
+        return buffer.flip();
+    }
+
+    /**
+     * This method decodes the position of a snapshot frame
+     * @param frame the frame
+     * @return a new position
+     * */
+    public static Position snapshot(ByteBuffer frame) {
+        int offset = frame.position() + HEADER + 6;
+        Position position = new Position();
+        for (int square = 0; square < 64; square += 2) {
+            int pair = frame.get(offset + square / 2) & 0xFF;
+            if (pair >> 4 != 0)
+                position.put(square, (pair >> 4) - 1);
+            if ((pair & 15) != 0)
+                position.put(square + 1, (pair & 15) - 1);
+        }
+        int flags = frame.get(offset + 32);
+        position.setWhiteToMove((flags & 1) != 0);
+        position.setCastlingRights(flags >> 1 & 15);
+        position.setEnPassantSquare(frame.get(offset + 33));
+        position.setHalfmoveClock(frame.getShort(offset + 34));
+        position.setFullmoveNumber(frame.getShort(offset + 36));
+        return position;
+    }
+
+    /**
+     * This method gets the reason of an error frame
+     * */
+    public static int reason(ByteBuffer frame) {
+        return frame.get(frame.position() + HEADER + 6);
+    }
+
+    /**
+     * This method gets the name of a reason, it is used in text error lines
+     * @param reason the reason, for example ILLEGAL
+     * */
+    public static String reasonName(int reason) {
+        return reason > 0 && reason < REASONS.length ? REASONS[reason] : "unknown";
+    }
+
+    /**
+     * This method parses a text move like "e2e4", "e1g1 . h1f1" or "e7e8 Queen" without regular expressions
+     * @param line the line
+     * @return the move as encoded by Move, or -1 if the line is not a move
+     * */
+    public static int parseMove(String line) {
+        if (line.length() < 4 || !isSquare(line, 0) || !isSquare(line, 2))
+            return -1;
+        int from = (line.charAt(1) - '1') * 8 + line.charAt(0) - 'a';
+        int to = (line.charAt(3) - '1') * 8 + line.charAt(2) - 'a';
+        if (line.length() == 4)
+            return Move.of(from, to);
+        // castling names the rook's move as well, the king's move is enough
+        if (line.length() == 11 && line.startsWith(" . ", 4) && isSquare(line, 7) && isSquare(line, 9))
+            return Move.of(from, to);
+        if (line.charAt(4) == ' ') {
+            int promotion = Position.typeFromName(line.substring(5));
+            if (promotion >= Position.KNIGHT && promotion <= Position.QUEEN)
+                return Move.of(from, to, promotion);
+        }
+        return -1;
+    }
+
+    private static boolean isSquare(String line, int index) {
+        char file = line.charAt(index);
+        char rank = line.charAt(index + 1);
+        return file >= 'a' && file <= 'h' && rank >= '1' && rank <= '8';
+    }
+
+    /**
+     * This method gets the type of a frame
+     * @param frame the frame, from its first byte
+     * */
+    public static int type(ByteBuffer frame) {
+        return frame.get(frame.position()) & ~BINARY & 0xFF;
+    }
+
+    /**
+     * This method gets the game id of a move, error or snapshot frame
+     * */
+    public static int game(ByteBuffer frame) {
+        return frame.getInt(frame.position() + HEADER);
+    }
+
+    /**
+     * This method gets the sequence number of a move, error or snapshot frame
+     * */
+    public static int sequence(ByteBuffer frame) {
+        return frame.getShort(frame.position() + HEADER + 4) & 0xFFFF;
+    }
+
+    /**
+     * This method gets the encoded move of a move frame
+     * */
+    public static int move(ByteBuffer frame) {
+        return frame.getShort(frame.position() + HEADER + 6) & 0xFFFF;
+    }
+}
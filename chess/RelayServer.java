@@ -0,0 +1,228 @@
+// Emir Adar
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class is a relay server that speaks the same protocol as the server ChessClient was written for
+ * (HELLO, WHITE, BLACK, START, NEXT, the moves and END), and relays the binary frames of Protocol.
+ * Clients are paired into games in the order they connect, and each game only relays lines between its
+ * own players after checking the moves. One selector thread serves all the games, so thousands of games
+ * fit on one machine. It also serves as a local server for testing.
+ * A client that sends "WATCH game" as its first line watches that game instead of playing.
+ * With -Dchess.pgn=<file> every game that had moves is added to the file when it is closed.
+ * Usage: java RelayServer [port]
+ * */
+public class RelayServer implements Connection.Handler {
+
+    // the port used when none is given, can be set with -Dchess.port=<port>
+    public static final int DEFAULT_PORT = Integer.getInteger("chess.port", 9494);
+
+    // how long a new client may stay silent before it joins a game, older clients wait to hear "WHITE" first
+    private static final long JOIN_MILLIS = 100;
+    // how long a game waits for a player whose connection dropped
+    private static final long RESUME_MILLIS = 60_000;
+
+    // declaring variables
+    private final NetworkLoop loop = new NetworkLoop("Relay");
+    private final Map<Integer, Game> games = new HashMap<>();
+    private final int port;
+    private Game open;
+    private int gameCount;
+    private volatile int activeGames;
+    private volatile int connections;
+    // the file is written on its own thread, the loop never waits for the disk
+    private final ExecutorService archive = System.getProperty("chess.pgn") == null ? null
+            : Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "Relay archive");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * This is the constructor for this class, the server starts right away
+     * @param port the port, 0 picks a free one
+     * @throws IOException if the port cannot be used
+     * */
+    public RelayServer(int port) throws IOException {
+        // the attack tables are built before the first move instead of stalling every game on it
+        Position.startingPosition().generateLegalMoves(new int[256]);
+        this.port = loop.listen(port, this);
+    }
+
+    /**
+     * This method is called for a new client, it joins a game with its first line unless that line resumes a game
+     * @param connection the new client
+     * */
+    @Override
+    public void opened(Connection connection) {
+        connections++;
+        loop.schedule(JOIN_MILLIS, () -> {
+            if (connection.isOpen() && connection.getAttachment() == null)
+                join(connection);
+        });
+    }
+
+    // pairing the client with the client that is waiting, or letting it wait for the next one
+    private void join(Connection connection) {
+        if (open == null || !open.isOpen()) {
+            open = new Game(++gameCount);
+            games.put(open.getId(), open);
+            activeGames++;
+        }
+        open.join(connection);
+    }
+
+    @Override
+    public void received(Connection connection, String line) {
+        Game game = (Game) connection.getAttachment();
+        boolean resume = line.startsWith("RESUME ");
+        if (resume || line.startsWith("WATCH ")) {
+            // a client whose first line came after it was joined leaves the game that is still waiting for it,
+            // these lines never reach a game, so the token is not relayed
+            if (game != null && game.leave(connection))
+                game = null;
+            if (resume)
+                resume(connection, line, game);
+            else if (game == null)
+                watch(connection, line);
+            else
+                connection.send("ERROR watch");
+            return;
+        }
+        if (game == null) {
+            join(connection);
+            game = (Game) connection.getAttachment();
+        }
+        game.received(connection, line);
+    }
+
+    /**
+     * This method lets a player come back to its game, the line is "RESUME game token moves"
+     * where moves is the number of moves the player knows of. A player that is still in its game can ask
+     * again too, for example to get the position after one of its moves was rejected.
+     * @param connection the player's connection
+     * @param line the line
+     * @param current the game the connection is a player of, or null
+     * */
+    private void resume(Connection connection, String line, Game current) {
+        try {
+            int first = line.indexOf(' ', 7);
+            int second = line.indexOf(' ', first + 1);
+            Game game = games.get(Integer.parseInt(line.substring(7, first)));
+            long token = Long.parseUnsignedLong(line.substring(first + 1, second), 16);
+            int moves = Integer.parseInt(line.substring(second + 1));
+            if (game != null && (current == null || current == game) && game.resume(connection, token)) {
+                game.catchUp(connection, moves);
+                return;
+            }
+        } catch (RuntimeException e) {
+            // a broken line is answered like an unknown game
+        }
+        connection.send("ERROR resume");
+        // a player keeps its game
+        if (current == null)
+            connection.close(null);
+    }
+
+    /**
+     * This method lets a client watch a game, the line is "WATCH game"
+     * @param connection the spectator's connection
+     * @param line the line
+     * */
+    private void watch(Connection connection, String line) {
+        Game game = null;
+        try {
+            game = games.get(Integer.parseInt(line.substring(6)));
+        } catch (NumberFormatException e) {
+            // a broken line is answered like an unknown game
+        }
+        if (game == null) {
+            connection.send("ERROR watch");
+            connection.close(null);
+            return;
+        }
+        game.watch(connection);
+    }
+
+    @Override
+    public void received(Connection connection, ByteBuffer frame) {
+        Game game = (Game) connection.getAttachment();
+        if (game != null)
+            game.received(connection, frame);
+    }
+
+    @Override
+    public void closed(Connection connection, IOException cause) {
+        connections--;
+        Game game = (Game) connection.getAttachment();
+        connection.setAttachment(null);
+        if (game == null || game.unwatch(connection))
+            return;
+        if (!game.disconnected(connection)) {
+            close(game);
+            return;
+        }
+        // the game waits for the player to come back, unless it leaves again in the meantime
+        int disconnects = game.getDisconnects();
+        loop.schedule(RESUME_MILLIS, () -> {
+            if (game.getDisconnects() == disconnects && game.isMissingPlayer())
+                close(game);
+        });
+    }
+
+    private void close(Game game) {
+        if (game.close()) {
+            if (archive != null && game.getMoves() > 0) {
+                GameRecord record = game.toRecord();
+                archive.execute(() -> PgnWriter.record(record));
+            }
+            activeGames--;
+            games.remove(game.getId());
+            if (game == open)
+                open = null;
+        }
+    }
+
+    /**
+     * This method gets the port the server listens on
+     * */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * This method gets the number of games that still have their players
+     * */
+    public int getActiveGames() {
+        return activeGames;
+    }
+
+    /**
+     * This method gets the number of connected clients
+     * */
+    public int getConnections() {
+        return connections;
+    }
+
+    /**
+     * This method stops the server and closes all connections
+     * */
+    public void close() {
+        loop.close();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        RelayServer server = new RelayServer(port);
+        System.out.println("Relay listening on port " + server.getPort());
+        while (true) {
+            Thread.sleep(10_000);
+            System.out.println("Games: " + server.getActiveGames() + ", connections: " + server.getConnections());
+            System.out.print(MoveMetrics.snapshot());
+        }
+    }
+}
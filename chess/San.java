@@ -0,0 +1,182 @@
+// Emir Adar
+
+/**
+ * This class converts moves to and from Standard Algebraic Notation (SAN), for example Nf3, exd5, O-O or e8=Q+.
+ * Both directions use the legal moves of the position, so a move is only as long as it has to be to
+ * tell it apart from the others, and a SAN is only accepted if exactly one legal move matches it.
+ * */
+public final class San {
+
+    // the letters of the piece types in the order of their numbers in Position
+    private static final String PIECES = "PNBRQK";
+
+    private San() {}
+
+    /**
+     * This method converts a legal move to SAN
+     * @param position the position before the move, it is the same afterwards
+     * @param move the move as encoded by Move
+     * @return the SAN, for example Nbd7+
+     * */
+    public static String toSan(Position position, int move) {
+        return append(position, move, new StringBuilder(8), new int[256]).toString();
+    }
+
+    /**
+     * This method writes a legal move as SAN to the end of a StringBuilder
+     * @param position the position before the move, it is the same afterwards
+     * @param move the move as encoded by Move
+     * @param san the StringBuilder
+     * @param moves a buffer for the legal moves, 256 entries are enough
+     * @return the same StringBuilder
+     * */
+    public static StringBuilder append(Position position, int move, StringBuilder san, int[] moves) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int type = Position.typeOf(position.pieceAt(from));
+
+        if (type == Position.KING && Math.abs(to - from) == 2) {
+            san.append(to > from ? "O-O" : "O-O-O");
+        } else {
+            boolean capture = position.pieceAt(to) != Position.EMPTY
+                    || (type == Position.PAWN && to == position.getEnPassantSquare());
+            if (type == Position.PAWN) {
+                if (capture)
+                    san.append((char) ('a' + Position.file(from)));
+            } else {
+                san.append(PIECES.charAt(type));
+                // checking if another piece of the same kind can go to the same square
+                boolean ambiguous = false;
+                boolean sameFile = false;
+                boolean sameRank = false;
+                int count = position.generateLegalMoves(moves);
+                for (int i = 0; i < count; i++) {
+                    int other = Move.from(moves[i]);
+                    if (other != from && Move.to(moves[i]) == to && position.pieceAt(other) == position.pieceAt(from)) {
+                        ambiguous = true;
+                        sameFile |= Position.file(other) == Position.file(from);
+                        sameRank |= Position.rank(other) == Position.rank(from);
+                    }
+                }
+                if (ambiguous && (!sameFile || sameRank))
+                    san.append((char) ('a' + Position.file(from)));
+                if (sameFile)
+                    san.append((char) ('1' + Position.rank(from)));
+            }
+            if (capture)
+                san.append('x');
+            san.append((char) ('a' + Position.file(to))).append((char) ('1' + Position.rank(to)));
+            int promotion = Move.promotion(move);
+            if (promotion != Position.EMPTY)
+                san.append('=').append(PIECES.charAt(promotion));
+        }
+
+        // a check is marked with + and a checkmate with #
+        position.makeMove(move);
+        boolean white = position.isWhiteToMove();
+        if (position.isInCheck(white))
+            san.append(position.hasLegalMove(white) ? '+' : '#');
+        position.unmakeMove();
+        return san;
+    }
+
+    /**
+     * This method finds the legal move a SAN stands for
+     * @param position the position
+     * @param san the SAN, marks like +, # and ! after it are ignored
+     * @return the move as encoded by Move, or Move.NONE if no legal move or more than one matches
+     * */
+    public static int parse(Position position, CharSequence san) {
+        return parse(position, san, 0, san.length(), new int[256]);
+    }
+
+    /**
+     * This method finds the legal move a SAN in a part of a text stands for, nothing is allocated
+     * @param position the position
+     * @param text the text
+     * @param start the index of the first character of the SAN
+     * @param end the index after the last character of the SAN
+     * @param moves a buffer for the legal moves, 256 entries are enough
+     * @return the move as encoded by Move, or Move.NONE if no legal move or more than one matches
+     * */
+    public static int parse(Position position, CharSequence text, int start, int end, int[] moves) {
+        // the marks of checks and comments on the move are not needed
+        while (end > start && "+#!?".indexOf(text.charAt(end - 1)) >= 0)
+            end--;
+        if (end - start < 2)
+            return Move.NONE;
+
+        int count = position.generateLegalMoves(moves);
+        char first = text.charAt(start);
+        if (first == 'O' || first == '0') {
+            // castling, O-O-O is five characters long and O-O three
+            boolean queenside = end - start == 5;
+            if (!queenside && end - start != 3)
+                return Move.NONE;
+            for (int i = 0; i < count; i++) {
+                int from = Move.from(moves[i]);
+                int to = Move.to(moves[i]);
+                if (Position.typeOf(position.pieceAt(from)) == Position.KING && to - from == (queenside ? -2 : 2))
+                    return moves[i];
+            }
+            return Move.NONE;
+        }
+
+        // the piece, the pawn has no letter
+        int type = Position.PAWN;
+        int i = start;
+        if (first >= 'B' && first <= 'R') {
+            type = PIECES.indexOf(first);
+            if (type < 0)
+                return Move.NONE;
+            i++;
+        }
+
+        // the promotion at the end, with or without =
+        int promotion = Position.EMPTY;
+        char last = text.charAt(end - 1);
+        if (last >= 'B' && last <= 'R') {
+            promotion = PIECES.indexOf(last);
+            if (promotion <= Position.PAWN || promotion == Position.KING)
+                return Move.NONE;
+            end--;
+            if (end > i && text.charAt(end - 1) == '=')
+                end--;
+        }
+
+        // the square the piece goes to is last, what comes before it tells which piece it is
+        if (end - i < 2)
+            return Move.NONE;
+        char toFile = text.charAt(end - 2);
+        char toRank = text.charAt(end - 1);
+        if (toFile < 'a' || toFile > 'h' || toRank < '1' || toRank > '8')
+            return Move.NONE;
+        int to = (toRank - '1') * 8 + toFile - 'a';
+        int fromFile = -1;
+        int fromRank = -1;
+        for (int j = i; j < end - 2; j++) {
+            char c = text.charAt(j);
+            if (c >= 'a' && c <= 'h')
+                fromFile = c - 'a';
+            else if (c >= '1' && c <= '8')
+                fromRank = c - '1';
+            else if (c != 'x' && c != '-' && c != ':')
+                return Move.NONE;
+        }
+
+        int found = Move.NONE;
+        for (int j = 0; j < count; j++) {
+            int move = moves[j];
+            int from = Move.from(move);
+            if (Move.to(move) != to || Move.promotion(move) != promotion
+                    || Position.typeOf(position.pieceAt(from)) != type
+                    || (fromFile != -1 && Position.file(from) != fromFile)
+                    || (fromRank != -1 && Position.rank(from) != fromRank))
+                continue;
+            if (found != Move.NONE)
+                return Move.NONE;
+            found = move;
+        }
+        return found;
+    }
+}
@@ -0,0 +1,290 @@
+// Emir Adar
+
+/**
+ * This class searches a position for the best move with iterative deepening negamax alpha-beta.
+ * Every iteration starts with a narrow aspiration window around the previous score and widens it if the
+ * score falls outside. Results are shared through the transposition table, which is how several searches
+ * of the same position on different threads help each other (Lazy SMP). Helper searches skip some depths
+ * so that they are usually ahead of the main search and fill the table with deeper results.
+ * */
+public class Search {
+
+    public static final int INFINITY = 32000;
+    public static final int MATE = 31000;
+    public static final int MAX_PLY = 100;
+
+    private static final int ASPIRATION_WINDOW = 40;
+
+    // which depths a helper skips, helper i skips depth d if ((d + SKIP_PHASE[i]) / SKIP_SIZE[i]) is odd
+    private static final int[] SKIP_SIZE = {1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 3, 3, 4, 4, 4, 4, 4, 4, 4, 4};
+    private static final int[] SKIP_PHASE = {0, 1, 0, 1, 2, 3, 0, 1, 2, 3, 4, 5, 0, 1, 2, 3, 4, 5, 6, 7};
+
+    private final Position position;
+    private final TranspositionTable table;
+    private final int thread;
+    private final int[][] moves = new int[MAX_PLY + 1][256];
+    private final int[][] scores = new int[MAX_PLY + 1][256];
+
+    private volatile boolean stopped;
+    private volatile int bestMove = Move.NONE;
+    private volatile int bestScore;
+    private volatile int completedDepth;
+    private long nodes;
+    private long deadline;
+    private int rootMove;
+
+    /**
+     * This is the constructor for this class
+     * @param position the position to search, it is changed during the search and restored afterwards
+     * @param table the transposition table
+     * */
+    public Search(Position position, TranspositionTable table) {
+        this(position, table, 0);
+    }
+
+    /**
+     * This is the constructor for a search that runs together with others on the same table
+     * @param position the position to search, every thread needs its own copy
+     * @param table the transposition table shared by all the threads
+     * @param thread 0 for the main search, 1 and up for the helpers
+     * */
+    public Search(Position position, TranspositionTable table, int thread) {
+        this.position = position;
+        this.table = table;
+        this.thread = thread;
+    }
+
+    /**
+     * This method searches until the time is up, the maximum depth is reached or stop is called
+     * @param millis the time budget in milliseconds
+     * @param maxDepth the maximum depth in plies
+     * @return the best move, or Move.NONE if there is no legal move
+     * */
+    public int search(long millis, int maxDepth) {
+        deadline = System.nanoTime() + millis * 1_000_000L;
+        int score = 0;
+
+        for (int depth = 1; depth <= maxDepth && !stopped; depth++) {
+            if (thread > 0) {
+                int i = (thread - 1) % SKIP_SIZE.length;
+                if (((depth + SKIP_PHASE[i]) / SKIP_SIZE[i]) % 2 != 0)
+                    continue;
+            }
+
+            // starting with a narrow window around the previous score, a wider one is tried if it fails
+            int window = depth > 4 ? ASPIRATION_WINDOW : INFINITY;
+            int alpha = Math.max(-INFINITY, score - window);
+            int beta = Math.min(INFINITY, score + window);
+            while (true) {
+                int result = negamax(depth, alpha, beta, 0);
+                if (stopped)
+                    break;
+                if (result <= alpha) {
+                    alpha = Math.max(-INFINITY, alpha - window);
+                    window *= 2;
+                } else if (result >= beta) {
+                    beta = Math.min(INFINITY, beta + window);
+                    window *= 2;
+                } else {
+                    score = result;
+                    break;
+                }
+            }
+            if (stopped)
+                break;
+
+            bestMove = rootMove;
+            bestScore = score;
+            completedDepth = depth;
+            if (Math.abs(score) > MATE - MAX_PLY)
+                break;
+        }
+
+        // falling back to any legal move if not even the first iteration finished
+        if (bestMove == Move.NONE) {
+            int count = position.generateLegalMoves(moves[0]);
+            if (count > 0)
+                bestMove = moves[0][0];
+        }
+        return bestMove;
+    }
+
+    private int negamax(int depth, int alpha, int beta, int ply) {
+        if (ply > 0 && (position.isRepetition() || position.getHalfmoveClock() >= 100))
+            return 0;
+
+        boolean inCheck = position.isInCheck(position.isWhiteToMove());
+        if (inCheck)
+            depth++;
+        if (depth <= 0 || ply >= MAX_PLY)
+            return quiesce(alpha, beta, ply);
+
+        if ((++nodes & 1023) == 0 && System.nanoTime() > deadline)
+            stopped = true;
+        if (stopped)
+            return 0;
+
+        // using the stored result if it was searched deep enough
+        long key = position.getKey();
+        long entry = table.probe(key);
+        int hashMove = Move.NONE;
+        if (entry != TranspositionTable.MISSING) {
+            hashMove = TranspositionTable.move(entry);
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int stored = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER_BOUND && stored >= beta)
+                        || (bound == TranspositionTable.UPPER_BOUND && stored <= alpha))
+                    return stored;
+            }
+        }
+
+        int[] list = moves[ply];
+        int count = position.generateLegalMoves(list);
+        if (count == 0)
+            return inCheck ? -MATE + ply : 0;
+        scoreMoves(list, scores[ply], count, hashMove);
+
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMoveHere = Move.NONE;
+        for (int i = 0; i < count; i++) {
+            int move = nextMove(list, scores[ply], i, count);
+            position.makeMove(move);
+            int score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+            position.unmakeMove();
+            if (stopped)
+                return 0;
+
+            if (score > best) {
+                best = score;
+                bestMoveHere = move;
+                if (ply == 0)
+                    rootMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    if (score >= beta)
+                        break;
+                }
+            }
+        }
+
+        int bound = best >= beta ? TranspositionTable.LOWER_BOUND
+                : best > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER_BOUND;
+        table.store(key, bestMoveHere, depth, bound, toTable(best, ply));
+        return best;
+    }
+
+    // searching only captures and promotions, so that the position is quiet when it is evaluated
+    private int quiesce(int alpha, int beta, int ply) {
+        nodes++;
+        int standPat = Evaluation.evaluate(position);
+        if (standPat >= beta || ply >= MAX_PLY)
+            return standPat;
+        if (standPat > alpha)
+            alpha = standPat;
+
+        int[] list = moves[ply];
+        int count = position.generateLegalMoves(list);
+        int captures = 0;
+        for (int i = 0; i < count; i++) {
+            int move = list[i];
+            if (position.pieceAt(Move.to(move)) != Position.EMPTY || Move.promotion(move) != Position.EMPTY)
+                list[captures++] = move;
+        }
+        scoreMoves(list, scores[ply], captures, Move.NONE);
+
+        for (int i = 0; i < captures; i++) {
+            int move = nextMove(list, scores[ply], i, captures);
+            position.makeMove(move);
+            int score = -quiesce(-beta, -alpha, ply + 1);
+            position.unmakeMove();
+            if (stopped)
+                return 0;
+            if (score > alpha) {
+                alpha = score;
+                if (score >= beta)
+                    break;
+            }
+        }
+        return alpha;
+    }
+
+    // the move from the table comes first, then captures of valuable pieces by cheap pieces
+    private void scoreMoves(int[] list, int[] values, int count, int hashMove) {
+        for (int i = 0; i < count; i++) {
+            int move = list[i];
+            int captured = position.pieceAt(Move.to(move));
+            int value = 0;
+            if (move == hashMove)
+                value = 1_000_000;
+            else if (captured != Position.EMPTY)
+                value = 10_000 + 10 * Evaluation.value(Position.typeOf(captured))
+                        - Evaluation.value(Position.typeOf(position.pieceAt(Move.from(move)))) / 10;
+            if (Move.promotion(move) != Position.EMPTY)
+                value += Evaluation.value(Move.promotion(move));
+            values[i] = value;
+        }
+    }
+
+    // picking the best remaining move, this is cheaper than sorting since most nodes cut off early
+    private int nextMove(int[] list, int[] values, int index, int count) {
+        int best = index;
+        for (int i = index + 1; i < count; i++) {
+            if (values[i] > values[best])
+                best = i;
+        }
+        int move = list[best];
+        list[best] = list[index];
+        list[index] = move;
+        int value = values[best];
+        values[best] = values[index];
+        values[index] = value;
+        return move;
+    }
+
+    // mate scores are stored relative to the position, not to the root
+    private static int toTable(int score, int ply) {
+        return score > MATE - MAX_PLY ? score + ply : score < -MATE + MAX_PLY ? score - ply : score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        return score > MATE - MAX_PLY ? score - ply : score < -MATE + MAX_PLY ? score + ply : score;
+    }
+
+    /**
+     * This method stops the search, search returns the best move found so far
+     * */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * This method gets the best move of the last finished iteration
+     * */
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    /**
+     * This method gets the score of the last finished iteration from the point of view of the side to move
+     * */
+    public int getBestScore() {
+        return bestScore;
+    }
+
+    /**
+     * This method gets the depth of the last finished iteration
+     * */
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    /**
+     * This method gets the number of positions searched so far
+     * */
+    public long getNodes() {
+        return nodes;
+    }
+}
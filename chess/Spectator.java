@@ -0,0 +1,99 @@
+// Emir Adar
+import javax.swing.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * This class lets a player watch a game on the relay. It sends "WATCH game", gets a snapshot of the position
+ * and then the moves as the players make them. The board only shows the game, no piece can be picked up.
+ * */
+public class Spectator implements Connection.Handler {
+
+    // declaring variables
+    // the relay, only it lets clients watch, can be set with -Dchess.host=<host> and -Dchess.port=<port>
+    private static String host = System.getProperty("chess.host", "localhost");
+    private static int port = Integer.getInteger("chess.port", 9494);
+
+    private final Board board;
+    private final int game;
+    private final NetworkLoop loop = new NetworkLoop("Spectator");
+    // the number of moves the board has got, -1 until the snapshot arrived
+    private int moves = -1;
+    private boolean closing;
+
+    /**
+     * This is the constructor for this class
+     * @param board the board that shows the game
+     * @param game the id of the game on the relay
+     * */
+    public Spectator(Board board, int game) {
+        this.board = board;
+        this.game = game;
+        // it is never the spectator's turn, so the board does not let it move
+        board.setWhitePlayer(true);
+        board.setWhitesTurn(false);
+        loop.connect(host, port, this);
+    }
+
+    @Override
+    public void opened(Connection connection) {
+        connection.send("WATCH " + game);
+    }
+
+    @Override
+    public void received(Connection connection, String line) {
+        if (line.equals("END"))
+            showMessage("The game has ended", JOptionPane.INFORMATION_MESSAGE);
+        else if (line.startsWith("ERROR"))
+            kill(connection, "There is no game " + game + " to watch");
+    }
+
+    /**
+     * This method handles the snapshot and the moves, the board is updated on the Swing event thread
+     * @param connection the connection
+     * @param frame the frame
+     * */
+    @Override
+    public void received(Connection connection, ByteBuffer frame) {
+        int type = Protocol.type(frame);
+        if (type == Protocol.SNAPSHOT && moves == -1 && frame.remaining() == Protocol.SNAPSHOT_SIZE) {
+            Position position = Protocol.snapshot(frame);
+            moves = Protocol.sequence(frame);
+            SwingUtilities.invokeLater(() -> {
+                board.startGame();
+                board.loadPosition(position);
+            });
+        } else if (type == Protocol.MOVE && moves != -1 && Protocol.sequence(frame) == moves + 1) {
+            int move = Protocol.move(frame);
+            moves++;
+            SwingUtilities.invokeLater(() -> {
+                Square source = board.getSquare(Position.row(Move.from(move)), Position.col(Move.from(move)));
+                Square destination = board.getSquare(Position.row(Move.to(move)), Position.col(Move.to(move)));
+                int promotion = Move.promotion(move);
+                board.applyMove(source, destination, promotion == Position.EMPTY ? null : Position.typeName(promotion));
+            });
+        }
+    }
+
+    @Override
+    public void closed(Connection connection, IOException cause) {
+        kill(connection, "The connection to the server was lost");
+    }
+
+    private void showMessage(String message, int type) {
+        SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, message, "Spectator", type));
+    }
+
+    // the player has read the message before the program exits
+    private void kill(Connection connection, String message) {
+        if (closing)
+            return;
+        closing = true;
+        connection.close(null);
+        loop.close();
+        SwingUtilities.invokeLater(() -> {
+            JOptionPane.showMessageDialog(null, message, "Error", JOptionPane.ERROR_MESSAGE);
+            System.exit(1);
+        });
+    }
+}
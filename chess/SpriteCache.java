@@ -0,0 +1,153 @@
+// Emir Adar
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class loads the twelve piece images from the classpath once and hands out shared icons that are
+ * already scaled to the wanted size. Icons are made per size and screen scale factor, so the sharp
+ * image for HiDPI screens is scaled once as well.
+ * */
+public final class SpriteCache {
+
+    private static final String[] RESOURCES = new String[12];
+    private static final BufferedImage[] ORIGINALS = new BufferedImage[12];
+    private static final Map<Long, SpriteIcon> ICONS = new ConcurrentHashMap<>();
+
+    static {
+        for (int piece = 0; piece < 12; piece++) {
+            RESOURCES[piece] = "/Pictures/" + Position.typeName(Position.typeOf(piece))
+                    + (Position.isWhite(piece) ? "_white.png" : "_black.png");
+        }
+    }
+
+    private SpriteCache() {}
+
+    /**
+     * This method gets the classpath resource of a piece image
+     * @param piece the piece code
+     * @return the resource name, for example /Pictures/King_white.png
+     * */
+    public static String resourceName(int piece) {
+        return RESOURCES[piece];
+    }
+
+    /**
+     * This method gets the icon of a piece for the default screen
+     * @param piece the piece code
+     * @param size the width and height of the icon
+     * @return the shared icon
+     * */
+    public static Icon getIcon(int piece, int size) {
+        return getIcon(piece, size, screenScale());
+    }
+
+    /**
+     * This method gets the icon of a piece
+     * @param piece the piece code
+     * @param size the width and height of the icon
+     * @param scale the scale factor of the screen, for example 2 on a HiDPI screen
+     * @return the shared icon
+     * */
+    public static Icon getIcon(int piece, int size, double scale) {
+        int pixels = (int) Math.round(size * scale);
+        long key = (long) piece << 40 | (long) size << 20 | pixels;
+        return ICONS.computeIfAbsent(key, k -> new SpriteIcon(scale(original(piece), pixels), size));
+    }
+
+    /**
+     * This method gets the image of a piece with the given number of pixels
+     * @param piece the piece code
+     * @param pixels the width and height of the image in device pixels
+     * @return the shared image, it must not be changed
+     * */
+    public static Image getImage(int piece, int pixels) {
+        return ((SpriteIcon) getIcon(piece, pixels, 1.0)).image;
+    }
+
+    /**
+     * This method gets the scale factor of the default screen
+     * */
+    public static double screenScale() {
+        if (GraphicsEnvironment.isHeadless())
+            return 1.0;
+        AffineTransform transform = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                .getDefaultConfiguration().getDefaultTransform();
+        return transform.getScaleX();
+    }
+
+    private static synchronized BufferedImage original(int piece) {
+        if (ORIGINALS[piece] == null) {
+            // the classpath is tried first, then the Pictures folder next to the working directory
+            try (InputStream in = SpriteCache.class.getResourceAsStream(RESOURCES[piece])) {
+                File file = new File(RESOURCES[piece].substring(1));
+                ORIGINALS[piece] = in != null ? ImageIO.read(in) : file.isFile() ? ImageIO.read(file) : null;
+            } catch (IOException e) {
+                ORIGINALS[piece] = null;
+            }
+            if (ORIGINALS[piece] == null) {
+                System.err.println("Could not load " + RESOURCES[piece]);
+                ORIGINALS[piece] = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+            }
+        }
+        return ORIGINALS[piece];
+    }
+
+    // halving the image until it is close to the wanted size keeps the quality of a smooth scale
+    private static BufferedImage scale(BufferedImage image, int pixels) {
+        BufferedImage current = image;
+        int size = Math.max(image.getWidth(), image.getHeight());
+        while (size / 2 >= pixels) {
+            size /= 2;
+            current = draw(current, size);
+        }
+        return current.getWidth() == pixels ? current : draw(current, pixels);
+    }
+
+    private static BufferedImage draw(BufferedImage image, int pixels) {
+        BufferedImage scaled = new BufferedImage(pixels, pixels, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(image, 0, 0, pixels, pixels, null);
+        g.dispose();
+        return scaled;
+    }
+
+    /**
+     * This inner class is an icon that draws a pre-scaled image, on a HiDPI screen the image has more
+     * pixels than the icon's size and is drawn one image pixel per screen pixel
+     * */
+    private static class SpriteIcon implements Icon {
+
+        private final BufferedImage image;
+        private final int size;
+
+        private SpriteIcon(BufferedImage image, int size) {
+            this.image = image;
+            this.size = size;
+        }
+
+        @Override
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            g.drawImage(image, x, y, size, size, null);
+        }
+
+        @Override
+        public int getIconWidth() {
+            return size;
+        }
+
+        @Override
+        public int getIconHeight() {
+            return size;
+        }
+    }
+}
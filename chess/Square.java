@@ -1,19 +1,16 @@
 // Emir Adar
-import javax.swing.*;
-import java.awt.*;
-import java.awt.event.MouseAdapter;
-import java.awt.event.MouseEvent;
 
 /**
- * This class represents a square on the board
+ * This class represents a square on the board, the board's view paints it
  * */
-public class Square extends JPanel {
+public class Square {
 
     // declaring variables
     private Board board;
     private Piece piece;
     private final int row;
     private final int col;
+    private final boolean isWhite;
 
     /**
      * This is the constructor for this class
@@ -27,101 +24,8 @@ public class Square extends JPanel {
         this.row = row;
         this.col = col;
         this.piece = piece;
+        this.isWhite = isWhite;
         this.board = board;
-
-        if (isWhite) {
-            setBackground(Color.WHITE);
-        } else {
-            setBackground(Color.GRAY);
-        }
-
-        addMouseListener(new SquareMouseListener());
-        setPreferredSize(new Dimension(60, 60));
-    }
-
-    /**
-     * This inner class listens to the mouse, it specifically listens to the mouse being pressed and the mouse being released
-     * */
-    private class SquareMouseListener extends MouseAdapter {
-
-        public void mousePressed(MouseEvent me) {
-            Piece piece = Square.this.getPiece();
-            // if there is a piece on the square and it's the same color as the player and the player can play
-            // the square is being saved
-            if (piece != null && piece.isWhite() == board.isWhitePlayer() && board.isThisPlayersTurn()) {
-                board.setDraggedSquare(Square.this);
-            } else if(board.isTheEndOfTheGame()) {
-                System.out.println("End of the game reached. Your opponent won!");
-            } else {
-                System.out.println("Not your piece");
-            }
-        }
-
-        public void mouseReleased(MouseEvent me) {
-            Square releaseSquare = board.getSquare(me.getLocationOnScreen());
-            Board initialState = board;
-            Piece draggedPiece = board.getDraggedSquare().getPiece();
-
-            if (releaseSquare != null && draggedPiece != null && !Square.this.equals(releaseSquare) && !board.getThisKing().kingIsInCheckAfterMove(board, board.getDraggedSquare(), releaseSquare)) {
-
-                // if the piece can move to the given square and the move doesn't put the king in check, allow the move
-                if (draggedPiece.canMove(board, board.getDraggedSquare(), releaseSquare) && (!board.getThisKing().isAttacked(board) || !board.getThisKing().kingIsInCheckAfterMove(board, board.getDraggedSquare(), releaseSquare))){
-                    if (draggedPiece instanceof King)
-                        handleKingMove(releaseSquare, draggedPiece);
-                    else
-                        handleOtherPieceMove(releaseSquare, draggedPiece);
-                }
-            } else {
-                board = initialState;
-            }
-            board.setDraggedSquare(null);
-        }
-
-        private void handleKingMove(Square releaseSquare, Piece draggedPiece) {
-            // checking if it's checkmate
-            if (((King) draggedPiece).isCheckmate(board)) {
-                board.setTheEndOfTheGame(true);
-                return;
-            }
-
-            // checking for castling move
-            if (releaseSquare.getPiece() instanceof Rook && draggedPiece.isWhite() == releaseSquare.getPiece().isWhite()) {
-                ((King) draggedPiece).handleCastling(board, board.getDraggedSquare(), releaseSquare);
-                return;
-            }
-
-            performMove(draggedPiece, releaseSquare);
-            if (board.getMoveListener() != null)
-                board.getMoveListener().moveMade(board.getDraggedSquare(), releaseSquare, null, null, null);
-        }
-
-        private void handleOtherPieceMove(Square releaseSquare, Piece draggedPiece) {
-            if(!board.getThisKing().kingIsInCheckAfterMove(board, board.getDraggedSquare(), releaseSquare)){
-
-                if(draggedPiece instanceof Pawn){
-                    if((releaseSquare.getRow() == 7 && !board.isWhitePlayer()) || (releaseSquare.getRow() == 0 && board.isWhitePlayer())){
-                        board.getDraggedSquare().setPiece(((Pawn) draggedPiece).promotePawn());
-                        board.getMoveListener().moveMade(board.getDraggedSquare(), releaseSquare, null, null, board.getDraggedSquare().getPiece().getClass().getSimpleName());
-                    }
-                }
-                performMove(board.getDraggedSquare().getPiece(), releaseSquare);
-                if (board.getMoveListener() != null)
-                    board.getMoveListener().moveMade(board.getDraggedSquare(), releaseSquare, null, null, null);
-            }
-        }
-
-        private void performMove(Piece draggedPiece, Square releaseSquare){
-            Piece capturedPiece = releaseSquare.getPiece();
-            Square originalSquare = draggedPiece.getPosition();
-            originalSquare.setPiece(null);
-            draggedPiece.setPosition(releaseSquare);
-
-            if (capturedPiece != null)
-                releaseSquare.setPiece(null);
-
-            releaseSquare.setPiece(draggedPiece);
-            board.getDraggedSquare().setPiece(null);
-        }
     }
 
     /**
@@ -130,17 +34,9 @@ public class Square extends JPanel {
      * */
     public void setPiece(Piece piece) {
         if (this.piece != piece) {
-            removeAll();
-            if (piece != null) {
-                ImageIcon icon = new ImageIcon(piece.getImageURL());
-                Image image = icon.getImage().getScaledInstance(60, 60, Image.SCALE_SMOOTH);
-                JLabel label = new JLabel(new ImageIcon(image));
-                label.setSize(new Dimension(60, 60));
-                add(label);
-            }
             this.piece = piece;
-            revalidate();
-            repaint();
+            // only this square is painted again, the layout does not change
+            board.repaintSquare(this);
         }
     }
 
@@ -158,6 +54,21 @@ public class Square extends JPanel {
         return col;
     }
 
+    /**
+     * This method checks the color of the square
+     * @return true if it is a light square
+     * */
+    public boolean isLight() {
+        return isWhite;
+    }
+
+    /**
+     * This method is for getting the index of the square in the headless position
+     * */
+    public int getIndex() {
+        return Position.index(row, col);
+    }
+
     /**
      * This method is for getting the piece on the square
      * */
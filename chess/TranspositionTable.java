@@ -0,0 +1,177 @@
+// Emir Adar
+
+/**
+ * This class is a fixed-size hash table of search results, indexed by the Zobrist key of the position.
+ * Every entry is two longs in one flat array: the key XOR the data, and the data itself. The data packs
+ * the best move, the depth, the bound, the score and the age of the search.
+ * Many threads may read and write at the same time without locks. A write that is torn by another thread
+ * makes the XOR check fail, so such an entry is simply treated as missing.
+ * */
+public class TranspositionTable {
+
+    // the kinds of scores
+    public static final int EXACT = 1;
+    public static final int LOWER_BOUND = 2;
+    public static final int UPPER_BOUND = 3;
+
+    // returned by probe when the position is not in the table
+    public static final long MISSING = 0;
+
+    // the size in MB used when none is given, can be set with -Dchess.hash=<MB>
+    public static final int DEFAULT_MEGABYTES = Integer.getInteger("chess.hash", 64);
+
+    // four entries share a bucket of 64 bytes, which is one cache line
+    private static final int BUCKET_ENTRIES = 4;
+
+    private final long[] table;
+    private final int bucketMask;
+    private volatile int age;
+
+    /**
+     * This is the constructor for this class
+     * @param megabytes the size of the table, it is rounded down to a power of two
+     * */
+    public TranspositionTable(int megabytes) {
+        long entries = Math.max(BUCKET_ENTRIES, (long) megabytes * 1024 * 1024 / 16);
+        int buckets = Integer.highestOneBit((int) Math.min(entries / BUCKET_ENTRIES, 1 << 26));
+        this.table = new long[buckets * BUCKET_ENTRIES * 2];
+        this.bucketMask = buckets - 1;
+    }
+
+    public TranspositionTable() {
+        this(DEFAULT_MEGABYTES);
+    }
+
+    /**
+     * This method looks up a position
+     * @param key the Zobrist key of the position
+     * @return the packed data, or MISSING if the position is not in the table
+     * */
+    public long probe(long key) {
+        int bucket = bucketIndex(key);
+        for (int i = bucket; i < bucket + BUCKET_ENTRIES * 2; i += 2) {
+            long data = table[i + 1];
+            if ((table[i] ^ data) == key && data != MISSING)
+                return data;
+        }
+        return MISSING;
+    }
+
+    /**
+     * This method saves a search result, it replaces the entry of the same position or else the entry
+     * that is oldest and shallowest
+     * @param key the Zobrist key of the position
+     * @param move the best move or Move.NONE
+     * @param depth the depth that was searched
+     * @param bound EXACT, LOWER_BOUND or UPPER_BOUND
+     * @param score the score, it has to fit in 16 bits
+     * */
+    public void store(long key, int move, int depth, int bound, int score) {
+        int bucket = bucketIndex(key);
+        int currentAge = age;
+        int replace = bucket;
+        int worst = Integer.MAX_VALUE;
+
+        for (int i = bucket; i < bucket + BUCKET_ENTRIES * 2; i += 2) {
+            long data = table[i + 1];
+            if ((table[i] ^ data) == key || data == MISSING) {
+                // keeping the old best move if this result has none
+                if (move == Move.NONE && data != MISSING)
+                    move = move(data);
+                replace = i;
+                break;
+            }
+
+            // older entries are replaced first, then the shallower ones
+            int value = depth(data) - 8 * ((currentAge - age(data)) & 0xFF);
+            if (value < worst) {
+                worst = value;
+                replace = i;
+            }
+        }
+
+        long data = pack(move, depth, bound, score, currentAge);
+        table[replace + 1] = data;
+        table[replace] = key ^ data;
+    }
+
+    /**
+     * This method is called before a new search, so that older entries are replaced first
+     * */
+    public void newSearch() {
+        age = (age + 1) & 0xFF;
+    }
+
+    /**
+     * This method removes every entry
+     * */
+    public void clear() {
+        java.util.Arrays.fill(table, 0);
+    }
+
+    /**
+     * This method estimates how full the table is with entries of the current search
+     * @return the number of used entries per thousand
+     * */
+    public int hashfull() {
+        int used = 0;
+        int sample = Math.min(1000, table.length / 2);
+        for (int i = 0; i < sample; i++) {
+            long data = table[i * 2 + 1];
+            if (data != MISSING && age(data) == age)
+                used++;
+        }
+        return used * 1000 / sample;
+    }
+
+    /**
+     * This method gets the number of entries in the table
+     * */
+    public int capacity() {
+        return table.length / 2;
+    }
+
+    private int bucketIndex(long key) {
+        return ((int) (key >>> 32) & bucketMask) * BUCKET_ENTRIES * 2;
+    }
+
+    private static long pack(int move, int depth, int bound, int score, int age) {
+        return (move & 0xFFFFL)
+                | (long) (depth & 0xFF) << 16
+                | (long) (bound & 3) << 24
+                | (long) (score & 0xFFFF) << 32
+                | (long) (age & 0xFF) << 48;
+    }
+
+    /**
+     * This method gets the best move of an entry
+     * */
+    public static int move(long data) {
+        return (int) (data & 0xFFFF);
+    }
+
+    /**
+     * This method gets the searched depth of an entry
+     * */
+    public static int depth(long data) {
+        return (int) (data >>> 16 & 0xFF);
+    }
+
+    /**
+     * This method gets the bound of an entry, EXACT, LOWER_BOUND or UPPER_BOUND
+     * */
+    public static int bound(long data) {
+        return (int) (data >>> 24 & 3);
+    }
+
+    /**
+     * This method gets the score of an entry
+     * */
+    public static int score(long data) {
+        return (short) (data >>> 32);
+    }
+
+    private static int age(long data) {
+        return (int) (data >>> 48 & 0xFF);
+    }
+}
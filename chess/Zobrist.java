@@ -0,0 +1,61 @@
+// Emir Adar
+
+/**
+ * This class holds the random numbers used for Zobrist hashing. The key of a position is the XOR of
+ * the numbers of every piece on its square, the castling rights, the en passant file and the side to move,
+ * so a move only has to XOR out what changed and XOR in the new state.
+ * */
+public final class Zobrist {
+
+    private static final long[][] PIECES = new long[12][64];
+    private static final long[] CASTLING = new long[16];
+    private static final long[] EN_PASSANT = new long[8];
+    private static final long BLACK_TO_MOVE;
+
+    static {
+        // a fixed seed keeps the keys the same between runs, so they can be stored
+        java.util.Random random = new java.util.Random(0x5EED_C0FFEEL);
+        for (long[] piece : PIECES) {
+            for (int square = 0; square < 64; square++)
+                piece[square] = random.nextLong();
+        }
+        for (int rights = 1; rights < 16; rights++)
+            CASTLING[rights] = random.nextLong();
+        for (int file = 0; file < 8; file++)
+            EN_PASSANT[file] = random.nextLong();
+        BLACK_TO_MOVE = random.nextLong();
+    }
+
+    private Zobrist() {}
+
+    /**
+     * This method gets the number of a piece on a square
+     * @param piece the piece code
+     * @param square the square index
+     * */
+    public static long piece(int piece, int square) {
+        return PIECES[piece][square];
+    }
+
+    /**
+     * This method gets the number of a combination of castling rights, no rights is 0
+     * */
+    public static long castling(int castlingRights) {
+        return CASTLING[castlingRights];
+    }
+
+    /**
+     * This method gets the number of an en passant square, no en passant square is 0
+     * @param square the en passant square or Position.EMPTY
+     * */
+    public static long enPassant(int square) {
+        return square == Position.EMPTY ? 0 : EN_PASSANT[Position.file(square)];
+    }
+
+    /**
+     * This method gets the number that is added when black is to move
+     * */
+    public static long blackToMove() {
+        return BLACK_TO_MOVE;
+    }
+}